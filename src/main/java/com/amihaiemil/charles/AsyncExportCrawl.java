@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * WebCrawl exporting into an {@link AsyncRepository}. When the crawl is
+ * over, it waits for all the pages to be exported and throws the first
+ * export error, if any.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class AsyncExportCrawl implements WebCrawl {
+
+    /**
+     * Slf4J Logger.
+     */
+    private static final Logger LOG = LoggerFactory
+        .getLogger(AsyncExportCrawl.class);
+
+    /**
+     * Original crawl, exporting into the repo.
+     */
+    private final WebCrawl crawl;
+
+    /**
+     * Asynchronous repository used by the crawl.
+     */
+    private final AsyncRepository repo;
+
+    /**
+     * Ctor.
+     * @param crawl Original crawl, which exports into the given repo.
+     * @param repo Asynchronous repository used by the crawl.
+     */
+    public AsyncExportCrawl(final WebCrawl crawl, final AsyncRepository repo) {
+        this.crawl = crawl;
+        this.repo = repo;
+    }
+
+    @Override
+    public void crawl() throws DataExportException {
+        try {
+            this.crawl.crawl();
+        } catch (final DataExportException ex) {
+            this.abort();
+            throw ex;
+        } catch (final RuntimeException ex) {
+            this.abort();
+            throw ex;
+        }
+        this.repo.close();
+    }
+
+    /**
+     * Close the repo after the crawl failed, ignoring any export error,
+     * since the crawl's own error is more relevant.
+     */
+    private void abort() {
+        try {
+            this.repo.close();
+        } catch (final DataExportException ex) {
+            LOG.error("Could not export crawled pages!", ex);
+        } catch (final RuntimeException ex) {
+            LOG.error("Could not export crawled pages!", ex);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Repository which exports the pages asynchronously, so the crawl does not
+ * wait for them to be written. Every batch is copied into a bounded queue
+ * and exported by background threads into the original repository. If
+ * the queue is full, the crawl waits (backpressure).<br><br>
+ * Call {@link #close()} when the crawl is over (or wrap the crawl in an
+ * {@link AsyncExportCrawl}): it waits for all the batches to be exported
+ * and throws the first export error, if any. An export error is also
+ * thrown by the next call to {@link #export(List)}, so the crawl stops.
+ * <br><br>
+ * With more exporter threads, the batches may be exported out of order
+ * and the original repository must be thread-safe.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class AsyncRepository implements Repository {
+
+    /**
+     * Slf4J Logger.
+     */
+    private static final Logger LOG = LoggerFactory
+        .getLogger(AsyncRepository.class);
+
+    /**
+     * Marker telling an exporter thread to stop.
+     */
+    private static final List<WebPage> STOP = new ArrayList<WebPage>(0);
+
+    /**
+     * Original repository.
+     */
+    private final Repository origin;
+
+    /**
+     * Batches waiting to be exported.
+     */
+    private final BlockingQueue<List<WebPage>> queue;
+
+    /**
+     * Number of exporter threads.
+     */
+    private final int exporters;
+
+    /**
+     * Running exporter threads.
+     */
+    private final List<Thread> threads;
+
+    /**
+     * Batches queued and not yet exported.
+     */
+    private int pending;
+
+    /**
+     * First export error.
+     */
+    private Exception failure;
+
+    /**
+     * Ctor. One exporter thread, at most 4 batches waiting.
+     * @param origin Original repository.
+     */
+    public AsyncRepository(final Repository origin) {
+        this(origin, 4);
+    }
+
+    /**
+     * Ctor. One exporter thread.
+     * @param origin Original repository.
+     * @param capacity How many batches can wait to be exported before
+     *  the crawl has to wait.
+     */
+    public AsyncRepository(final Repository origin, final int capacity) {
+        this(origin, capacity, 1);
+    }
+
+    /**
+     * Ctor.
+     * @param origin Original repository; it has to be thread-safe if
+     *  there are more exporters.
+     * @param capacity How many batches can wait to be exported before
+     *  the crawl has to wait.
+     * @param exporters Number of exporter threads.
+     */
+    public AsyncRepository(
+        final Repository origin, final int capacity, final int exporters
+    ) {
+        this.origin = origin;
+        this.queue = new ArrayBlockingQueue<List<WebPage>>(capacity);
+        this.exporters = exporters;
+        this.threads = new ArrayList<Thread>();
+    }
+
+    @Override
+    public void export(final List<WebPage> pages) throws DataExportException {
+        this.rethrow();
+        if(pages.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if(this.threads.isEmpty()) {
+                this.start();
+            }
+            this.pending = this.pending + 1;
+        }
+        try {
+            this.queue.put(new ArrayList<WebPage>(pages));
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.exported();
+            throw new IllegalStateException(
+                "Interrupted while queueing pages for export!", ex
+            );
+        }
+    }
+
+    /**
+     * Wait until all the queued pages are exported.
+     * @throws DataExportException If any batch could not be exported.
+     */
+    @Override
+    public void flush() throws DataExportException {
+        synchronized (this) {
+            while(this.pending > 0) {
+                try {
+                    this.wait();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(
+                        "Interrupted while waiting for the export!", ex
+                    );
+                }
+            }
+        }
+        this.rethrow();
+    }
+
+    /**
+     * Wait until all the queued pages are exported and stop the exporter
+     * threads. The repository can be used again afterwards.
+     * @throws DataExportException If any batch could not be exported.
+     */
+    public void close() throws DataExportException {
+        try {
+            this.flush();
+        } finally {
+            this.stop();
+        }
+    }
+
+    /**
+     * Start the exporter threads.
+     */
+    private void start() {
+        for(int idx = 0; idx < this.exporters; ++idx) {
+            final Thread thread = new Thread(
+                new Exporter(), "charles-export-" + idx
+            );
+            thread.setDaemon(true);
+            thread.start();
+            this.threads.add(thread);
+        }
+    }
+
+    /**
+     * Stop the exporter threads and forget any export error.
+     */
+    private void stop() {
+        final List<Thread> running;
+        synchronized (this) {
+            running = new ArrayList<Thread>(this.threads);
+            this.threads.clear();
+        }
+        try {
+            for(int idx = 0; idx < running.size(); ++idx) {
+                this.queue.put(AsyncRepository.STOP);
+            }
+            for(final Thread thread : running) {
+                thread.join();
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                "Interrupted while stopping the exporters!", ex
+            );
+        } finally {
+            synchronized (this) {
+                this.failure = null;
+            }
+        }
+    }
+
+    /**
+     * A batch was exported (or given up on).
+     */
+    private synchronized void exported() {
+        this.pending = this.pending - 1;
+        this.notifyAll();
+    }
+
+    /**
+     * Remember the export error, if it is the first one.
+     * @param err Error.
+     */
+    private synchronized void fail(final Exception err) {
+        if(this.failure == null) {
+            this.failure = err;
+        }
+    }
+
+    /**
+     * Throw the first export error, if any.
+     * @throws DataExportException If a batch could not be exported.
+     */
+    private synchronized void rethrow() throws DataExportException {
+        if(this.failure instanceof DataExportException) {
+            throw (DataExportException) this.failure;
+        }
+        if(this.failure instanceof RuntimeException) {
+            throw (RuntimeException) this.failure;
+        }
+    }
+
+    /**
+     * Were all the batches exported successfully, so far?
+     * @return True or false.
+     */
+    private synchronized boolean healthy() {
+        return this.failure == null;
+    }
+
+    /**
+     * Exporter thread, draining the queue into the original repository.
+     * After an error, the remaining batches are dropped.
+     */
+    private final class Exporter implements Runnable {
+        @Override
+        public void run() {
+            final AsyncRepository repo = AsyncRepository.this;
+            while(true) {
+                final List<WebPage> pages;
+                try {
+                    pages = repo.queue.take();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if(pages == AsyncRepository.STOP) {
+                    break;
+                }
+                try {
+                    if(repo.healthy()) {
+                        repo.origin.export(pages);
+                    }
+                } catch (final DataExportException ex) {
+                    LOG.error("Could not export crawled pages!", ex);
+                    repo.fail(ex);
+                } catch (final RuntimeException ex) {
+                    LOG.error("Could not export crawled pages!", ex);
+                    repo.fail(ex);
+                } finally {
+                    repo.exported();
+                }
+            }
+        }
+    }
+}
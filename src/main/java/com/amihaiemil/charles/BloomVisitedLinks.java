@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+/**
+ * Bloom filter in front of other VisitedLinks. Most links found on a page
+ * are checked before they are added; for those never seen before, the
+ * filter answers without touching the decorated set (which might be on
+ * disk, see {@link MappedVisitedLinks}). The filter uses about 10 bits per
+ * expected link; a "maybe seen" answer is always confirmed by the
+ * decorated set, so false positives only cost a lookup.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class BloomVisitedLinks implements VisitedLinks {
+
+    /**
+     * Number of hash functions.
+     */
+    private static final int HASHES = 7;
+
+    /**
+     * Decorated visited links.
+     */
+    private final VisitedLinks origin;
+
+    /**
+     * Canonicalizer of the hrefs.
+     */
+    private final UrlCanonicalizer canonicalizer;
+
+    /**
+     * Bits of the filter.
+     */
+    private final long[] bits;
+
+    /**
+     * Ctor.
+     * @param origin Decorated visited links.
+     * @param expected Expected number of links.
+     */
+    public BloomVisitedLinks(final VisitedLinks origin, final int expected) {
+        this(origin, expected, new UrlCanonicalizer());
+    }
+
+    /**
+     * Ctor.
+     * @param origin Decorated visited links.
+     * @param expected Expected number of links.
+     * @param canonicalizer Canonicalizer of the hrefs; it must be the same
+     *  as the one of the decorated visited links, or links seen before
+     *  may be reported as not seen.
+     */
+    public BloomVisitedLinks(
+        final VisitedLinks origin, final int expected,
+        final UrlCanonicalizer canonicalizer
+    ) {
+        this.origin = origin;
+        this.canonicalizer = canonicalizer;
+        this.bits = new long[Math.max(1, (int) ((expected * 10L + 63) / 64))];
+    }
+
+    @Override
+    public boolean add(final Link link) {
+        final long hash = Fingerprint.of(link, this.canonicalizer);
+        final boolean added;
+        if(this.mightContain(hash)) {
+            added = this.origin.add(link);
+        } else {
+            this.origin.add(link);
+            added = true;
+        }
+        this.put(hash);
+        return added;
+    }
+
+    @Override
+    public boolean contains(final Link link) {
+        return this.mightContain(Fingerprint.of(link, this.canonicalizer))
+            && this.origin.contains(link);
+    }
+
+    @Override
+    public void clear() {
+        for(int idx = 0; idx < this.bits.length; ++idx) {
+            this.bits[idx] = 0;
+        }
+        this.origin.clear();
+    }
+
+    /**
+     * Might the filter contain the fingerprint?
+     * @param hash Fingerprint.
+     * @return False if it definitely does not contain it.
+     */
+    private boolean mightContain(final long hash) {
+        boolean all = true;
+        for(int idx = 0; idx < BloomVisitedLinks.HASHES && all; ++idx) {
+            final long bit = this.bit(hash, idx);
+            all = (this.bits[(int) (bit >>> 6)] & (1L << bit)) != 0;
+        }
+        return all;
+    }
+
+    /**
+     * Put the fingerprint into the filter.
+     * @param hash Fingerprint.
+     */
+    private void put(final long hash) {
+        for(int idx = 0; idx < BloomVisitedLinks.HASHES; ++idx) {
+            final long bit = this.bit(hash, idx);
+            this.bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Bit set by the given hash function (double hashing over the two
+     * halves of the fingerprint).
+     * @param hash Fingerprint.
+     * @param function Index of the hash function.
+     * @return Index of the bit.
+     */
+    private long bit(final long hash, final int function) {
+        final long combined = (hash & 0xffffffffL) + function * (hash >>> 32);
+        return (combined & Long.MAX_VALUE) % (this.bits.length * 64L);
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Repository which exports only the pages that changed since they were
+ * exported last time. The {@link ContentHash} of each page is compared
+ * with the one remembered in a {@link CrawlHistory} (e.g. a
+ * {@link FileCrawlHistory}, to remember it between crawls) and only the
+ * pages with a different hash are forwarded to the original repository.
+ * The pages are keyed by their canonical final url, which may differ from
+ * the url a {@link SitemapXmlCrawl} keys them by (e.g. after a redirect),
+ * so the two must not share the same history.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class ChangedPagesRepository implements Repository {
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        ChangedPagesRepository.class
+    );
+
+    /**
+     * Original repository.
+     */
+    private final Repository origin;
+
+    /**
+     * Hashes of the exported pages.
+     */
+    private final CrawlHistory hashes;
+
+    /**
+     * Canonicalizer of the page urls.
+     */
+    private final UrlCanonicalizer canonicalizer;
+
+    /**
+     * Ctor. Remembers the hashes only in memory.
+     * @param origin Original repository.
+     */
+    public ChangedPagesRepository(final Repository origin) {
+        this(origin, new InMemoryCrawlHistory());
+    }
+
+    /**
+     * Ctor.
+     * @param origin Original repository.
+     * @param hashes Hashes of the pages exported before; not to be shared
+     *  with a {@link SitemapXmlCrawl}.
+     */
+    public ChangedPagesRepository(
+        final Repository origin, final CrawlHistory hashes
+    ) {
+        this(origin, hashes, new UrlCanonicalizer());
+    }
+
+    /**
+     * Ctor.
+     * @param origin Original repository.
+     * @param hashes Hashes of the pages exported before; not to be shared
+     *  with a {@link SitemapXmlCrawl}.
+     * @param canonicalizer Canonicalizer of the page urls, which are
+     *  the keys of the hashes.
+     */
+    public ChangedPagesRepository(
+        final Repository origin, final CrawlHistory hashes,
+        final UrlCanonicalizer canonicalizer
+    ) {
+        this.origin = origin;
+        this.hashes = hashes;
+        this.canonicalizer = canonicalizer;
+    }
+
+    /**
+     * Export the pages which changed. Their hashes are remembered only
+     * after the original repository exported them, so an asynchronous
+     * original repository is flushed after every batch; to export in the
+     * background, wrap this repository in the {@link AsyncRepository}
+     * instead.
+     * @param pages Pages to export.
+     * @throws DataExportException If something goes wrong.
+     */
+    @Override
+    public synchronized void export(final List<WebPage> pages)
+        throws DataExportException {
+        final List<WebPage> changed = new ArrayList<WebPage>();
+        final List<String> keys = new ArrayList<String>();
+        final List<Long> hashed = new ArrayList<Long>();
+        for(final WebPage page : pages) {
+            final String key = this.canonicalizer.canonical(page.getUrl());
+            final long hash = ContentHash.of(page);
+            if(this.hashes.crawled(key) < 0
+                || this.hashes.hash(key) != hash) {
+                changed.add(page);
+                keys.add(key);
+                hashed.add(hash);
+            }
+        }
+        LOG.info(
+            (pages.size() - changed.size()) + " of " + pages.size()
+            + " pages did not change and will not be exported."
+        );
+        if(!changed.isEmpty()) {
+            this.origin.export(changed);
+            this.origin.flush();
+            final long now = System.currentTimeMillis();
+            try {
+                for(int idx = 0; idx < keys.size(); ++idx) {
+                    this.hashes.record(
+                        keys.get(idx), now, hashed.get(idx),
+                        this.hashes.lastmod(keys.get(idx))
+                    );
+                }
+                this.hashes.save();
+            } catch (final IOException ex) {
+                throw new DataExportException(
+                    "Could not save the page hashes: " + ex.getMessage()
+                );
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws DataExportException {
+        this.origin.flush();
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+/**
+ * Compression of the files written by the file-based repositories.
+ * Every compressed stream is a complete frame (gzip member, LZ4 frame),
+ * so frames can be appended to the same file and read back with the
+ * standard tools (zcat, lz4 -dc).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public enum Compression {
+
+    /**
+     * No compression.
+     */
+    NONE("") {
+        @Override
+        public OutputStream compress(final OutputStream out) {
+            return out;
+        }
+
+        @Override
+        public InputStream decompress(final InputStream in) {
+            return in;
+        }
+    },
+
+    /**
+     * Gzip: good ratio, moderate speed.
+     */
+    GZIP(".gz") {
+        @Override
+        public OutputStream compress(final OutputStream out)
+            throws IOException {
+            return new GZIPOutputStream(out, Compression.BUFFER);
+        }
+
+        @Override
+        public InputStream decompress(final InputStream in)
+            throws IOException {
+            return new GZIPInputStream(in, Compression.BUFFER);
+        }
+    },
+
+    /**
+     * LZ4 frame format: lower ratio than gzip, but several times faster.
+     */
+    LZ4(".lz4") {
+        @Override
+        public OutputStream compress(final OutputStream out)
+            throws IOException {
+            return new LZ4FrameOutputStream(out);
+        }
+
+        @Override
+        public InputStream decompress(final InputStream in)
+            throws IOException {
+            return new LZ4FrameInputStream(in);
+        }
+    };
+
+    /**
+     * Size of the gzip buffers.
+     */
+    private static final int BUFFER = 64 * 1024;
+
+    /**
+     * Extension of the compressed files (e.g. .gz).
+     */
+    private final String extension;
+
+    /**
+     * Ctor.
+     * @param extension Extension of the compressed files.
+     */
+    Compression(final String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Extension of the compressed files, appended to their usual name.
+     * @return Extension, starting with a dot, or empty if nothing
+     *  is compressed.
+     */
+    public String extension() {
+        return this.extension;
+    }
+
+    /**
+     * Compress what is written to the stream. The frame is complete
+     * when the returned stream is closed, which also closes the
+     * original stream.
+     * @param out Original stream.
+     * @return Compressing stream.
+     * @throws IOException If something goes wrong.
+     */
+    public abstract OutputStream compress(OutputStream out)
+        throws IOException;
+
+    /**
+     * Decompress what is read from the stream.
+     * @param in Compressed stream.
+     * @return Decompressing stream.
+     * @throws IOException If something goes wrong.
+     */
+    public abstract InputStream decompress(InputStream in)
+        throws IOException;
+}
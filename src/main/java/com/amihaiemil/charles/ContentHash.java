@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 64 bits hash of a page's content: title, text and links. The name and
+ * url of the page are not part of the content. If the hash of a page did
+ * not change since the last crawl, the page did not change either.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class ContentHash {
+
+    /**
+     * FNV-1a 64 bits offset basis.
+     */
+    private static final long OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64 bits prime.
+     */
+    private static final long PRIME = 0x100000001b3L;
+
+    /**
+     * Hidden ctor.
+     */
+    private ContentHash() {
+    }
+
+    /**
+     * Hash of the page's content. The links are hashed in the order of
+     * their canonical hrefs, since the order of a Set is not reliable.
+     * @param page Web page.
+     * @return 64 bits hash.
+     */
+    public static long of(final WebPage page) {
+        long hash = ContentHash.hash(ContentHash.OFFSET, page.getTitle());
+        hash = ContentHash.hash(hash, page.getTextContent());
+        final List<String> links = new ArrayList<String>();
+        if(page.getLinks() != null) {
+            for(final Link link : page.getLinks()) {
+                links.add(link.canonical() + "\t" + link.getText());
+            }
+        }
+        Collections.sort(links);
+        for(final String link : links) {
+            hash = ContentHash.hash(hash, link);
+        }
+        return Fingerprint.mix(hash);
+    }
+
+    /**
+     * Continue the FNV-1a hash with the given text, followed by a
+     * separator, so "ab" + "c" and "a" + "bc" hash differently.
+     * @param hash Hash so far.
+     * @param text Text to hash; null is hashed as empty.
+     * @return Hash.
+     */
+    private static long hash(final long hash, final String text) {
+        long result = hash;
+        if(text != null) {
+            for(int idx = 0; idx < text.length(); ++idx) {
+                result = (result ^ text.charAt(idx)) * ContentHash.PRIME;
+            }
+        }
+        return (result ^ 0xffff) * ContentHash.PRIME;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.IOException;
+
+/**
+ * When was each page crawled last time and what was its content then.
+ * Used by incremental crawls, to skip the pages which did not change.
+ * Each user of a history keys the pages its own way, so one history
+ * should not be shared between them.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public interface CrawlHistory {
+
+    /**
+     * When was the page crawled last time?
+     * @param url Url of the page.
+     * @return Time in milliseconds or -1 if it was never crawled.
+     */
+    long crawled(String url);
+
+    /**
+     * Content hash of the page, when it was crawled last time
+     * (see {@link ContentHash}).
+     * @param url Url of the page.
+     * @return Hash; meaningless if the page was never crawled.
+     */
+    long hash(String url);
+
+    /**
+     * Lastmod of the page (e.g. from the sitemap), when it was crawled
+     * last time.
+     * @param url Url of the page.
+     * @return Time in milliseconds or -1 if it is not known.
+     */
+    long lastmod(String url);
+
+    /**
+     * Remember that the page was crawled.
+     * @param url Url of the page.
+     * @param time Time of the crawl, in milliseconds.
+     * @param hash Content hash of the page.
+     * @param lastmod Lastmod of the page in milliseconds, -1 if unknown.
+     * @throws IOException If the history cannot be written.
+     */
+    void record(String url, long time, long hash, long lastmod)
+        throws IOException;
+
+    /**
+     * Make sure everything recorded so far is persisted.
+     * @throws IOException If the history cannot be written.
+     */
+    void save() throws IOException;
+}
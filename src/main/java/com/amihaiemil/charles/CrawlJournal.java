@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Journal of a graph crawl: the links it queued and the pages it exported.
+ * If the crawl dies, a new crawl (or the same one, retried by a
+ * {@link RetriableCrawl}) resumes from the journal instead of starting
+ * again from the index page.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public interface CrawlJournal {
+
+    /**
+     * Restore the state of an unfinished crawl: the links seen and the
+     * links queued but not exported yet.
+     * @param frontier Empty frontier, to queue the links into.
+     * @param visited Empty set of the links seen.
+     * @return True if there was an unfinished crawl, false otherwise.
+     * @throws IOException If the journal cannot be read.
+     */
+    boolean resume(Frontier frontier, VisitedLinks visited)
+        throws IOException;
+
+    /**
+     * A link was seen and queued.
+     * @param link Link.
+     * @param depth Depth of the link.
+     * @throws IOException If the journal cannot be written.
+     */
+    void queued(Link link, int depth) throws IOException;
+
+    /**
+     * A link was seen but not queued (it is ignored or it was refused by
+     * the frontier).
+     * @param link Link.
+     * @throws IOException If the journal cannot be written.
+     */
+    void seen(Link link) throws IOException;
+
+    /**
+     * The pages of these links were given to the repository. This is a
+     * checkpoint: a journal which persists it first flushes the repository
+     * (see {@link Repository#flush()}), so it never records pages which
+     * were only queued for export.
+     * @param repo Repository the pages were exported to.
+     * @param links Links of the exported pages.
+     * @throws IOException If the journal cannot be written.
+     * @throws DataExportException If the repository cannot be flushed.
+     */
+    void exported(Repository repo, List<Link> links)
+        throws IOException, DataExportException;
+
+    /**
+     * The crawl was interrupted; keep the journal, so it can be resumed.
+     * @throws IOException If the journal cannot be written.
+     */
+    void close() throws IOException;
+
+    /**
+     * The crawl finished; the journal is not needed anymore.
+     * @throws IOException If the journal cannot be removed.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Frontier which crawls the website depth-first: the link found last is
+ * crawled first. Both operations take constant time.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class DepthFirstFrontier implements Frontier {
+
+    /**
+     * Stack of links.
+     */
+    private final Deque<ScheduledLink> links;
+
+    /**
+     * Depth of the last link returned.
+     */
+    private int last;
+
+    /**
+     * Ctor.
+     */
+    public DepthFirstFrontier() {
+        this.links = new ArrayDeque<ScheduledLink>();
+    }
+
+    @Override
+    public boolean add(final Link link, final int depth) {
+        this.links.addFirst(new ScheduledLink(link, depth, 0));
+        return true;
+    }
+
+    @Override
+    public Link next() {
+        final ScheduledLink next = this.links.pollFirst();
+        Link link = null;
+        if(next != null) {
+            this.last = next.depth();
+            link = next.link();
+        }
+        return link;
+    }
+
+    @Override
+    public int depth() {
+        return this.last;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.links.isEmpty();
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+/**
+ * Frontier which refuses the links deeper than a given number of hops
+ * from the index page. Decorates any other Frontier.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class DepthLimitedFrontier implements Frontier {
+
+    /**
+     * Decorated frontier.
+     */
+    private final Frontier origin;
+
+    /**
+     * Maximum depth.
+     */
+    private final int max;
+
+    /**
+     * Ctor. Crawls breadth-first.
+     * @param max Maximum depth (0 means only the index page).
+     */
+    public DepthLimitedFrontier(final int max) {
+        this(new BreadthFirstFrontier(), max);
+    }
+
+    /**
+     * Ctor.
+     * @param origin Decorated frontier.
+     * @param max Maximum depth (0 means only the index page).
+     */
+    public DepthLimitedFrontier(final Frontier origin, final int max) {
+        this.origin = origin;
+        this.max = max;
+    }
+
+    @Override
+    public boolean add(final Link link, final int depth) {
+        return depth <= this.max && this.origin.add(link, depth);
+    }
+
+    @Override
+    public Link next() {
+        return this.origin.next();
+    }
+
+    @Override
+    public int depth() {
+        return this.origin.depth();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.origin.isEmpty();
+    }
+}
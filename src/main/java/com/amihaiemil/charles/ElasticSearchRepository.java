@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Exports the pages into an Elasticsearch index. Each batch is sent as
+ * one _bulk request, whose NDJSON body is streamed page by page, so it
+ * is never built in memory. The documents have the same structure as
+ * {@link JsonWebPage}, with the page's url as id.<br><br>
+ * It is thread-safe; wrap it in an {@link AsyncRepository} to index while
+ * crawling. Close it when the crawl is over, to close its HTTP client.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class ElasticSearchRepository
+    implements Repository, Closeable {
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        ElasticSearchRepository.class
+    );
+
+    /**
+     * Json mapper; thread-safe once configured.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * HTTP client.
+     */
+    private final CloseableHttpClient client;
+
+    /**
+     * Url of the _bulk endpoint.
+     */
+    private final String bulk;
+
+    /**
+     * Type of the documents.
+     */
+    private final String type;
+
+    /**
+     * Ctor. The documents have the type "page".
+     * @param elastic Url of Elasticsearch (e.g. http://localhost:9200).
+     * @param index Name of the index.
+     */
+    public ElasticSearchRepository(final String elastic, final String index) {
+        this(elastic, index, "page");
+    }
+
+    /**
+     * Ctor.
+     * @param elastic Url of Elasticsearch (e.g. http://localhost:9200).
+     * @param index Name of the index.
+     * @param type Type of the documents.
+     */
+    public ElasticSearchRepository(
+        final String elastic, final String index, final String type
+    ) {
+        this(PooledHttpClient.create(20), elastic, index, type);
+    }
+
+    /**
+     * Ctor.
+     * @param client HTTP client. It will be closed when this repository
+     *  is closed.
+     * @param elastic Url of Elasticsearch (e.g. http://localhost:9200).
+     * @param index Name of the index.
+     * @param type Type of the documents.
+     */
+    public ElasticSearchRepository(
+        final CloseableHttpClient client, final String elastic,
+        final String index, final String type
+    ) {
+        this.client = client;
+        String base = elastic;
+        if(!base.endsWith("/")) {
+            base = base + "/";
+        }
+        this.bulk = base + index + "/_bulk";
+        this.type = type;
+    }
+
+    @Override
+    public void export(final List<WebPage> pages) throws DataExportException {
+        if(pages.isEmpty()) {
+            return;
+        }
+        final HttpPost request = new HttpPost(this.bulk);
+        request.setEntity(new Bulk(pages, this.type));
+        final JsonNode result;
+        try {
+            final CloseableHttpResponse response = this.client.execute(
+                request
+            );
+            try {
+                final int status = response.getStatusLine().getStatusCode();
+                final HttpEntity entity = response.getEntity();
+                String body = "";
+                if(entity != null) {
+                    body = EntityUtils.toString(entity, "UTF-8");
+                }
+                if(status >= 300) {
+                    throw new DataExportException(
+                        "Bulk request to " + this.bulk + " failed with status "
+                        + status + ": " + body
+                    );
+                }
+                if(body.trim().isEmpty()) {
+                    result = null;
+                } else {
+                    result = ElasticSearchRepository.MAPPER.readTree(body);
+                }
+            } finally {
+                response.close();
+            }
+        } catch (final IOException ex) {
+            LOG.error(ex.getMessage(), ex);
+            throw new DataExportException(
+                "Bulk request to " + this.bulk + " failed: " + ex.getMessage()
+            );
+        }
+        if(result != null && result.path("errors").asBoolean(false)) {
+            final List<String> failed = ElasticSearchRepository.failed(result);
+            throw new DataExportException(
+                failed.size() + " of " + pages.size()
+                + " pages could not be indexed: " + failed
+            );
+        }
+    }
+
+    @Override
+    public void flush() {
+        //pages are exported synchronously, nothing to wait for
+    }
+
+    /**
+     * Close the HTTP client.
+     * @throws IOException If the client cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.client.close();
+    }
+
+    /**
+     * Failed items of a bulk response.
+     * @param result Bulk response.
+     * @return Id and reason of each failed item.
+     */
+    private static List<String> failed(final JsonNode result) {
+        final List<String> failed = new ArrayList<String>();
+        for(final JsonNode item : result.path("items")) {
+            final Iterator<JsonNode> actions = item.elements();
+            while(actions.hasNext()) {
+                final JsonNode action = actions.next();
+                final JsonNode error = action.get("error");
+                if(error != null && !error.isNull()) {
+                    final String reason;
+                    if(error.has("reason")) {
+                        reason = error.get("reason").asText();
+                    } else {
+                        reason = error.toString();
+                    }
+                    failed.add(
+                        action.path("_id").asText() + " (" + reason + ")"
+                    );
+                }
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Body of a _bulk request, written page by page directly to the
+     * connection. It can be written more times (e.g. if the request
+     * is retried).
+     */
+    private static final class Bulk extends AbstractHttpEntity {
+
+        /**
+         * Pages to index.
+         */
+        private final List<WebPage> pages;
+
+        /**
+         * Type of the documents.
+         */
+        private final String type;
+
+        /**
+         * Ctor.
+         * @param pages Pages to index.
+         * @param type Type of the documents.
+         */
+        Bulk(final List<WebPage> pages, final String type) {
+            this.pages = pages;
+            this.type = type;
+            this.setContentType("application/x-ndjson; charset=UTF-8");
+            this.setChunked(true);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            this.writeTo(body);
+            return new ByteArrayInputStream(body.toByteArray());
+        }
+
+        @Override
+        public void writeTo(final OutputStream out) throws IOException {
+            final JsonGenerator json = ElasticSearchRepository.MAPPER
+                .getFactory().createGenerator(out, JsonEncoding.UTF8);
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+            for(final WebPage page : this.pages) {
+                json.writeStartObject();
+                json.writeObjectFieldStart("index");
+                json.writeStringField("_type", this.type);
+                json.writeStringField("_id", page.getUrl());
+                json.writeEndObject();
+                json.writeEndObject();
+                json.writeRaw('\n');
+                final ObjectNode doc = ElasticSearchRepository.MAPPER
+                    .createObjectNode();
+                doc.put("id", page.getUrl());
+                doc.setAll(
+                    (ObjectNode) ElasticSearchRepository.MAPPER
+                        .valueToTree(page)
+                );
+                json.writeTree(doc);
+                json.writeRaw('\n');
+            }
+            json.flush();
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+}
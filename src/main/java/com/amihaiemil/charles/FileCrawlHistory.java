@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+
+/**
+ * Crawl history kept in a file on disk, so it is available to the
+ * next runs. Every record is appended to the file (one line per page:
+ * time, hash, lastmod and url, separated by tabs) and the file is
+ * compacted, keeping only the latest record of each page, when it is
+ * opened. The whole history is also kept in memory, for fast lookups.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class FileCrawlHistory implements CrawlHistory {
+
+    /**
+     * History file.
+     */
+    private final File file;
+
+    /**
+     * Same history, in memory.
+     */
+    private final InMemoryCrawlHistory memory;
+
+    /**
+     * Writer appending the new records; null if nothing was recorded
+     * since the last save.
+     */
+    private Writer appender;
+
+    /**
+     * Ctor. Reads and compacts the history file, if it exists.
+     * @param file History file.
+     * @throws IOException If the file cannot be read or compacted.
+     */
+    public FileCrawlHistory(final File file) throws IOException {
+        this.file = file;
+        this.memory = new InMemoryCrawlHistory();
+        if(file.exists()) {
+            this.load();
+            this.compact();
+        }
+    }
+
+    @Override
+    public long crawled(final String url) {
+        return this.memory.crawled(url);
+    }
+
+    @Override
+    public long hash(final String url) {
+        return this.memory.hash(url);
+    }
+
+    @Override
+    public long lastmod(final String url) {
+        return this.memory.lastmod(url);
+    }
+
+    @Override
+    public void record(
+        final String url, final long time, final long hash,
+        final long lastmod
+    ) throws IOException {
+        this.memory.record(url, time, hash, lastmod);
+        if(this.appender == null) {
+            this.appender = FileCrawlHistory.writer(this.file, true);
+        }
+        FileCrawlHistory.line(this.appender, url, time, hash, lastmod);
+    }
+
+    @Override
+    public void save() throws IOException {
+        if(this.appender != null) {
+            try {
+                this.appender.flush();
+            } finally {
+                this.appender.close();
+                this.appender = null;
+            }
+        }
+    }
+
+    /**
+     * Read the history file; later records overwrite earlier ones.
+     * @throws IOException If the file cannot be read.
+     */
+    private void load() throws IOException {
+        final BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(this.file), "UTF-8")
+        );
+        try {
+            String line = reader.readLine();
+            while(line != null) {
+                final String[] parts = line.split("\t", 4);
+                if(parts.length == 4) {
+                    try {
+                        this.memory.record(
+                            parts[3], Long.parseLong(parts[0]),
+                            new BigInteger(parts[1], 16).longValue(),
+                            Long.parseLong(parts[2])
+                        );
+                    } catch (final NumberFormatException ex) {
+                        //corrupted line (e.g. partially written), skip it
+                    }
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Rewrite the history file with only the latest record of each page.
+     * The new file is written next to the old one and then renamed over
+     * it; the old file is deleted first only if the platform cannot
+     * rename over an existing file (e.g. Windows).
+     * @throws IOException If the file cannot be written.
+     */
+    private void compact() throws IOException {
+        final File temp = new File(
+            this.file.getAbsoluteFile().getParentFile(),
+            this.file.getName() + ".tmp"
+        );
+        final Writer writer = FileCrawlHistory.writer(temp, false);
+        try {
+            for(final String url : this.memory.urls()) {
+                FileCrawlHistory.line(
+                    writer, url, this.memory.crawled(url),
+                    this.memory.hash(url), this.memory.lastmod(url)
+                );
+            }
+        } finally {
+            writer.close();
+        }
+        if(!temp.renameTo(this.file)
+            && (!this.file.delete() || !temp.renameTo(this.file))) {
+            throw new IOException(
+                "Could not replace " + this.file + " with " + temp
+            );
+        }
+    }
+
+    /**
+     * Write one record.
+     * @param writer Writer.
+     * @param url Url of the page.
+     * @param time Time of the crawl.
+     * @param hash Content hash.
+     * @param lastmod Lastmod of the page.
+     * @throws IOException If the record cannot be written.
+     */
+    private static void line(
+        final Writer writer, final String url, final long time,
+        final long hash, final long lastmod
+    ) throws IOException {
+        writer.write(
+            time + "\t" + Long.toHexString(hash) + "\t" + lastmod
+            + "\t" + url + "\n"
+        );
+    }
+
+    /**
+     * UTF-8, buffered writer of the given file.
+     * @param file File.
+     * @param append Append to the file or overwrite it?
+     * @return Writer.
+     * @throws IOException If the file cannot be opened.
+     */
+    private static Writer writer(final File file, final boolean append)
+        throws IOException {
+        return new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(file, append), "UTF-8")
+        );
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Crawl journal kept in a file, so an interrupted crawl can be resumed
+ * even after the program restarts. Each event is appended as one line:
+ * <pre>
+ * Q &lt;depth&gt; &lt;href&gt;  link queued
+ * S &lt;href&gt;          link seen, not queued
+ * D &lt;href&gt;          page exported
+ * </pre>
+ * The file is flushed at every checkpoint (after each exported batch),
+ * once the repository is flushed too.
+ * Pages crawled after the last checkpoint are crawled again when the
+ * crawl resumes, so nothing is lost and nothing is exported twice,
+ * unless the export itself was interrupted. A last line which is not
+ * terminated (the program died while writing it) is cut off when
+ * the crawl resumes.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class FileCrawlJournal implements CrawlJournal {
+
+    /**
+     * Journal file.
+     */
+    private final File file;
+
+    /**
+     * Writer appending to the journal; null if it is not open.
+     */
+    private Writer appender;
+
+    /**
+     * Ctor.
+     * @param file Journal file.
+     */
+    public FileCrawlJournal(final File file) {
+        this.file = file;
+    }
+
+    @Override
+    public boolean resume(
+        final Frontier frontier, final VisitedLinks visited
+    ) throws IOException {
+        boolean resumed = false;
+        if(this.file.exists()) {
+            this.truncate();
+        }
+        if(this.file.exists() && this.file.length() > 0) {
+            final Map<String, Integer> queued =
+                new LinkedHashMap<String, Integer>();
+            final Map<String, Boolean> seen = new HashMap<String, Boolean>();
+            final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(this.file), "UTF-8")
+            );
+            try {
+                String line = reader.readLine();
+                while(line != null) {
+                    FileCrawlJournal.replay(line, queued, seen);
+                    line = reader.readLine();
+                }
+            } finally {
+                reader.close();
+            }
+            for(final String href : seen.keySet()) {
+                visited.add(new Link("", href));
+            }
+            for(final Map.Entry<String, Integer> link : queued.entrySet()) {
+                final Link found = new Link("", link.getKey());
+                visited.add(found);
+                frontier.add(found, link.getValue());
+            }
+            resumed = true;
+        }
+        return resumed;
+    }
+
+    @Override
+    public void queued(final Link link, final int depth) throws IOException {
+        this.writer().write("Q\t" + depth + "\t" + link.getHref() + "\n");
+    }
+
+    @Override
+    public void seen(final Link link) throws IOException {
+        this.writer().write("S\t" + link.getHref() + "\n");
+    }
+
+    @Override
+    public void exported(final Repository repo, final List<Link> links)
+        throws IOException, DataExportException {
+        repo.flush();
+        final Writer writer = this.writer();
+        for(final Link link : links) {
+            writer.write("D\t" + link.getHref() + "\n");
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(this.appender != null) {
+            try {
+                this.appender.flush();
+            } finally {
+                this.appender.close();
+                this.appender = null;
+            }
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        this.close();
+        if(this.file.exists() && !this.file.delete()) {
+            throw new IOException("Could not delete " + this.file);
+        }
+    }
+
+    /**
+     * Cut off the last line of the journal if it is not terminated, so it
+     * is neither replayed nor continued by the next appended line.
+     * @throws IOException If the journal cannot be read or written.
+     */
+    private void truncate() throws IOException {
+        final RandomAccessFile journal = new RandomAccessFile(this.file, "rw");
+        try {
+            long end = journal.length();
+            while(end > 0) {
+                journal.seek(end - 1);
+                if(journal.read() == '\n') {
+                    break;
+                }
+                end = end - 1;
+            }
+            if(end < journal.length()) {
+                journal.setLength(end);
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * Writer appending to the journal, opened if necessary.
+     * @return Writer.
+     * @throws IOException If the journal cannot be opened.
+     */
+    private Writer writer() throws IOException {
+        if(this.appender == null) {
+            this.appender = new BufferedWriter(
+                new OutputStreamWriter(
+                    new FileOutputStream(this.file, true), "UTF-8"
+                )
+            );
+        }
+        return this.appender;
+    }
+
+    /**
+     * Replay one line of the journal. Lines which are not well formed
+     * are skipped.
+     * @param line Line.
+     * @param queued Links queued and not exported yet, with their depth.
+     * @param seen Links seen.
+     */
+    private static void replay(
+        final String line, final Map<String, Integer> queued,
+        final Map<String, Boolean> seen
+    ) {
+        final String[] parts = line.split("\t", 3);
+        if("Q".equals(parts[0]) && parts.length == 3) {
+            try {
+                queued.put(parts[2], Integer.valueOf(parts[1]));
+            } catch (final NumberFormatException ex) {
+                seen.put(parts[2], Boolean.TRUE);
+            }
+        } else if("S".equals(parts[0]) && parts.length == 2) {
+            seen.put(parts[1], Boolean.TRUE);
+        } else if("D".equals(parts[0]) && parts.length == 2) {
+            if(queued.remove(parts[1]) != null) {
+                seen.put(parts[1], Boolean.TRUE);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+/**
+ * 64 bits fingerprint of a link's href. Two links which are equal
+ * (see {@link Link#equals(Object)}) have the same fingerprint. It is
+ * computed on the link's cached canonical href, so hashing a link twice
+ * does not allocate anything.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class Fingerprint {
+
+    /**
+     * FNV-1a 64 bits offset basis.
+     */
+    private static final long OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64 bits prime.
+     */
+    private static final long PRIME = 0x100000001b3L;
+
+    /**
+     * Canonicalizer of the hrefs.
+     */
+    private static final UrlCanonicalizer CANONICALIZER =
+        new UrlCanonicalizer();
+
+    /**
+     * Hidden ctor.
+     */
+    private Fingerprint() {
+    }
+
+    /**
+     * Fingerprint of a link.
+     * @param link Link.
+     * @return 64 bits fingerprint.
+     */
+    public static long of(final Link link) {
+        return Fingerprint.hash(link.canonical());
+    }
+
+    /**
+     * Fingerprint of a link, in the canonical form given by the specified
+     * canonicalizer.
+     * @param link Link.
+     * @param canonicalizer Canonicalizer of the href.
+     * @return 64 bits fingerprint.
+     */
+    public static long of(
+        final Link link, final UrlCanonicalizer canonicalizer
+    ) {
+        return Fingerprint.hash(link.canonical(canonicalizer));
+    }
+
+    /**
+     * Fingerprint of an href, in its canonical form.
+     * @param href Href.
+     * @return 64 bits fingerprint.
+     */
+    public static long of(final String href) {
+        return Fingerprint.hash(Fingerprint.CANONICALIZER.canonical(href));
+    }
+
+    /**
+     * FNV-1a hash of an already canonical href.
+     * @param canonical Canonical href.
+     * @return 64 bits fingerprint.
+     */
+    private static long hash(final String canonical) {
+        long hash = Fingerprint.OFFSET;
+        if(canonical != null) {
+            for(int idx = 0; idx < canonical.length(); ++idx) {
+                hash = (hash ^ canonical.charAt(idx)) * Fingerprint.PRIME;
+            }
+        }
+        return Fingerprint.mix(hash);
+    }
+
+    /**
+     * Spread the bits of the hash (MurmurHash3 finalizer), so the low bits
+     * can be used directly as an index in a hash table.
+     * @param value Hash.
+     * @return Mixed hash.
+     */
+    static long mix(final long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+/**
+ * Visited links kept as 64 bits {@link Fingerprint}s in an open-addressing
+ * hash table of primitive longs. A visited link costs between 11 and 21
+ * bytes of heap, instead of the hundreds needed by a Link in a HashSet,
+ * and checking a link allocates nothing.<br><br>
+ * Two different links with the same 64 bits fingerprint are considered
+ * equal; the odds of that are negligible for any real website.<br><br>
+ * Links are equal if their hrefs have the same canonical form, given by
+ * a {@link UrlCanonicalizer}, which can be configured (e.g. to remove
+ * tracking parameters).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class FingerprintVisitedLinks implements VisitedLinks {
+
+    /**
+     * Initial number of slots.
+     */
+    private final int initial;
+
+    /**
+     * Canonicalizer of the hrefs.
+     */
+    private final UrlCanonicalizer canonicalizer;
+
+    /**
+     * The table; 0 marks an empty slot.
+     */
+    private long[] table;
+
+    /**
+     * Number of links in the table.
+     */
+    private int size;
+
+    /**
+     * Ctor.
+     */
+    public FingerprintVisitedLinks() {
+        this(1024);
+    }
+
+    /**
+     * Ctor.
+     * @param expected Expected number of links.
+     */
+    public FingerprintVisitedLinks(final int expected) {
+        this(expected, new UrlCanonicalizer());
+    }
+
+    /**
+     * Ctor.
+     * @param canonicalizer Canonicalizer of the hrefs.
+     */
+    public FingerprintVisitedLinks(final UrlCanonicalizer canonicalizer) {
+        this(1024, canonicalizer);
+    }
+
+    /**
+     * Ctor.
+     * @param expected Expected number of links.
+     * @param canonicalizer Canonicalizer of the hrefs.
+     */
+    public FingerprintVisitedLinks(
+        final int expected, final UrlCanonicalizer canonicalizer
+    ) {
+        this.canonicalizer = canonicalizer;
+        int capacity = 16;
+        while(capacity * 3 / 4 < expected && capacity < 1 << 30) {
+            capacity = capacity << 1;
+        }
+        this.initial = capacity;
+        this.table = new long[capacity];
+    }
+
+    @Override
+    public boolean add(final Link link) {
+        if(this.size + 1 > this.table.length * 3 / 4) {
+            this.grow();
+        }
+        final boolean added = FingerprintVisitedLinks.insert(
+            this.table, FingerprintVisitedLinks.key(link, this.canonicalizer)
+        );
+        if(added) {
+            this.size = this.size + 1;
+        }
+        return added;
+    }
+
+    @Override
+    public boolean contains(final Link link) {
+        final long key = FingerprintVisitedLinks.key(
+            link, this.canonicalizer
+        );
+        final int mask = this.table.length - 1;
+        int idx = (int) key & mask;
+        boolean found = false;
+        while(this.table[idx] != 0) {
+            if(this.table[idx] == key) {
+                found = true;
+                break;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return found;
+    }
+
+    @Override
+    public void clear() {
+        this.table = new long[this.initial];
+        this.size = 0;
+    }
+
+    /**
+     * Double the table.
+     */
+    private void grow() {
+        final long[] old = this.table;
+        if(old.length >= 1 << 30) {
+            throw new IllegalStateException(
+                "Too many visited links: " + this.size
+            );
+        }
+        this.table = new long[old.length << 1];
+        for(final long key : old) {
+            if(key != 0) {
+                FingerprintVisitedLinks.insert(this.table, key);
+            }
+        }
+    }
+
+    /**
+     * Insert a key into a table.
+     * @param table Table.
+     * @param key Key, never 0.
+     * @return True if inserted, false if the key was already there.
+     */
+    private static boolean insert(final long[] table, final long key) {
+        final int mask = table.length - 1;
+        int idx = (int) key & mask;
+        boolean inserted = true;
+        while(table[idx] != 0) {
+            if(table[idx] == key) {
+                inserted = false;
+                break;
+            }
+            idx = (idx + 1) & mask;
+        }
+        if(inserted) {
+            table[idx] = key;
+        }
+        return inserted;
+    }
+
+    /**
+     * Key of a link in the table. 0 marks an empty slot, so it is
+     * never used as a key.
+     * @param link Link.
+     * @param canonicalizer Canonicalizer of the href.
+     * @return Key.
+     */
+    private static long key(
+        final Link link, final UrlCanonicalizer canonicalizer
+    ) {
+        long key = Fingerprint.of(link, canonicalizer);
+        if(key == 0) {
+            key = 1;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+/**
+ * Links waiting to be crawled. The frontier decides the order in which
+ * the pages of a website are visited and may refuse links (e.g. if they
+ * are too deep). It does not check for duplicates, the crawl should only
+ * add links that were not seen before.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public interface Frontier {
+
+    /**
+     * Add a link to be crawled.
+     * @param link Link.
+     * @param depth Number of hops from the index page to the link
+     *  (the index page has depth 0).
+     * @return True if the link was added, false if it was refused.
+     */
+    boolean add(Link link, int depth);
+
+    /**
+     * The next link to crawl, removed from the frontier.
+     * @return Link or null if the frontier is empty.
+     */
+    Link next();
+
+    /**
+     * Depth of the link last returned by {@link #next()}.
+     * @return Number of hops from the index page.
+     */
+    int depth();
+
+    /**
+     * Is there anything left to crawl?
+     * @return True if the frontier is empty, false otherwise.
+     */
+    boolean isEmpty();
+}
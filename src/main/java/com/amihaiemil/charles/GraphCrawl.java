@@ -26,25 +26,55 @@
  */
 package com.amihaiemil.charles;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Crawl the website as a graph (tree) starting from the index page.
+ * Given a {@link CrawlJournal} (e.g. a {@link FileCrawlJournal}), an
+ * interrupted crawl is resumed from its last checkpoint instead of
+ * starting again from the index page. At every checkpoint the journal
+ * flushes the repository, so it never records pages which were only
+ * queued for export (e.g. by an {@link AsyncRepository}). Equivalent
+ * links are recognized by the {@link VisitedLinks}, which can be given
+ * a configured {@link UrlCanonicalizer} (e.g. one removing tracking
+ * parameters).
  * @author Mihai Andronache (amihaiemil@gmail.com)
  *
  */
 public final class GraphCrawl extends AbstractWebCrawl {
 
+    /**
+     * Slf4J Logger.
+     */
+    private static final Logger LOG = LoggerFactory
+        .getLogger(GraphCrawl.class);
+
     /**
      * Page to start the crawling from.
      */
     private Link index;
 
+    /**
+     * Links waiting to be crawled.
+     */
+    private Frontier frontier;
+
+    /**
+     * Links seen so far.
+     */
+    private VisitedLinks visited;
+
+    /**
+     * Journal of the crawl, to resume it if it is interrupted.
+     */
+    private CrawlJournal journal;
+
     /**
      * Constructor.
      * @param idx The index page of the site.
@@ -91,60 +121,164 @@ public final class GraphCrawl extends AbstractWebCrawl {
     public GraphCrawl(
         String idx, WebDriver drv,
         IgnoredPatterns ignored, Repository repo, int batchSize
+    ) {
+        this(idx, drv, ignored, repo, batchSize, new BreadthFirstFrontier());
+    }
+
+    /**
+     * Constructor.
+     * @param idx The index page of the site.
+     * @param drv {@link WebDriver} to use.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batchSize Size of the export batch.
+     * @param frontier Frontier deciding the order of the crawl.
+     */
+    public GraphCrawl(
+        String idx, WebDriver drv, IgnoredPatterns ignored,
+        Repository repo, int batchSize, Frontier frontier
+    ) {
+        this(
+            idx, drv, ignored, repo, batchSize,
+            frontier, new InMemoryVisitedLinks()
+        );
+    }
+
+    /**
+     * Constructor.
+     * @param idx The index page of the site.
+     * @param drv {@link WebDriver} to use.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batchSize Size of the export batch.
+     * @param frontier Frontier deciding the order of the crawl.
+     * @param visited Links seen during the crawl; its canonicalizer
+     *  decides which links are the same.
+     */
+    public GraphCrawl(
+        String idx, WebDriver drv, IgnoredPatterns ignored,
+        Repository repo, int batchSize, Frontier frontier,
+        VisitedLinks visited
+    ) {
+        this(
+            idx, drv, ignored, repo, batchSize,
+            frontier, visited, new NoCrawlJournal()
+        );
+    }
+
+    /**
+     * Constructor.
+     * @param idx The index page of the site.
+     * @param drv {@link WebDriver} to use.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batchSize Size of the export batch.
+     * @param frontier Frontier deciding the order of the crawl.
+     * @param visited Links seen during the crawl; its canonicalizer
+     *  decides which links are the same.
+     * @param journal Journal of the crawl, to resume it from.
+     * @checkstyle ParameterNumber (10 lines)
+     */
+    public GraphCrawl(
+        String idx, WebDriver drv, IgnoredPatterns ignored,
+        Repository repo, int batchSize, Frontier frontier,
+        VisitedLinks visited, CrawlJournal journal
     ) {
         super(drv, ignored, repo, batchSize);
         this.index = new Link("index", idx);
+        this.frontier = frontier;
+        this.visited = visited;
+        this.journal = journal;
     }
 
     @Override
     public void crawl() throws DataExportException {
         if(!this.ignoredPatterns().contains(this.index.getHref())) {
-            List<WebPage> pages = new ArrayList<WebPage>();
-            this.driver().get(this.index.getHref());
-            WebPage indexSnapshot =  new LiveWebPage(this.driver()).snapshot();
-            pages.add(indexSnapshot);
-
-            Set<Link> crawledLinks = new HashSet<Link>();
-            crawledLinks.add(this.index);
-
-            List<Link> toCrawl = new ArrayList<Link>();
-            toCrawl.addAll(indexSnapshot.getLinks());
-
-            this.checkBatchSize(pages);
+            try {
+                this.traverse();
+                this.journal.finish();
+            } catch (final IOException ex) {
+                throw new IllegalStateException(
+                    "Could not write the crawl journal", ex
+                );
+            } finally {
+                GraphCrawl.close(this.journal);
+            }
+            this.driver().quit();
+        }
+    }
 
-            if(toCrawl.size() > 0) {
-                Link link = toCrawl.remove(0);
-                while(toCrawl.size() > 0) {
-                    if(this.ignoredPatterns().contains(link.getHref())) {
-                        link = toCrawl.remove(0);
-                        continue;
-                    }
-                    boolean notCrawledAlready = crawledLinks.add(link);
-                    if(notCrawledAlready) {
-                    	this.driver().get(link.getHref());
-                        WebPage snapshotCrawled = new LiveWebPage(this.driver()).snapshot();
-                        pages.add(snapshotCrawled);
-                        this.checkBatchSize(pages);
-                        toCrawl.addAll(snapshotCrawled.getLinks());
+    /**
+     * Crawl the pages, from the index page or from where the journal
+     * says the previous crawl was interrupted.
+     * @throws DataExportException If the pages cannot be exported.
+     * @throws IOException If the journal cannot be read or written.
+     */
+    private void traverse() throws DataExportException, IOException {
+        List<WebPage> pages = new ArrayList<WebPage>();
+        List<Link> links = new ArrayList<Link>();
+        this.visited.clear();
+        while(!this.frontier.isEmpty()) {
+            this.frontier.next();
+        }
+        if(!this.journal.resume(this.frontier, this.visited)) {
+            this.visited.add(this.index);
+            this.frontier.add(this.index, 0);
+            this.journal.queued(this.index, 0);
+        }
+        while(!this.frontier.isEmpty()) {
+            Link link = this.frontier.next();
+            int depth = this.frontier.depth();
+            this.driver().get(link.getHref());
+            WebPage snapshot = new LiveWebPage(this.driver()).snapshot();
+            for(Link found : snapshot.getLinks()) {
+                if(!this.visited.contains(found)) {
+                    if(this.ignoredPatterns().contains(found.getHref())) {
+                        this.visited.add(found);
+                        this.journal.seen(found);
+                    } else if(this.frontier.add(found, depth + 1)) {
+                        this.visited.add(found);
+                        this.journal.queued(found, depth + 1);
                     }
-                    link = toCrawl.remove(0);
                 }
             }
-            this.repo().export(pages);
-            this.driver().quit();
+            pages.add(snapshot);
+            links.add(link);
+            this.checkBatchSize(pages, links);
         }
+        this.repo().export(pages);
+        this.journal.exported(this.repo(), links);
     }
 
     /**
-     * Check if the batch size has been reached. If yes, export the pages and empty the
-     * list for the next batch.
+     * Check if the batch size has been reached. If yes, export the pages,
+     * checkpoint the journal and empty the lists for the next batch.
      * @param pages Pages crawled so far.
+     * @param links Links of the crawled pages.
      * @throws DataExportException If something goes wrong during processing of crawled pages.
+     * @throws IOException If the journal cannot be written.
      */
-    private void checkBatchSize(List<WebPage> pages) throws DataExportException {
+    private void checkBatchSize(
+        final List<WebPage> pages, final List<Link> links
+    ) throws DataExportException, IOException {
         if(pages.size() == this.batchSize()) {
             this.repo().export(pages);
+            this.journal.exported(this.repo(), links);
             pages.clear();
+            links.clear();
+        }
+    }
+
+    /**
+     * Close the journal after the crawl finished or was interrupted.
+     * A failure is only logged, so it does not hide the crawl's own error.
+     * @param journal Journal.
+     */
+    private static void close(final CrawlJournal journal) {
+        try {
+            journal.close();
+        } catch (final IOException ex) {
+            LOG.error("Could not close the crawl journal", ex);
         }
     }
 
@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * Browser which fetches the pages with a plain HTTP client and parses
+ * their HTML, without rendering them. It is a lot faster than a WebDriver,
+ * but it does not see content generated by JavaScript.<br><br>
+ * It is thread-safe: the same instance can be used by many crawl workers
+ * at the same time (e.g. given to a {@link ParallelGraphCrawl} with
+ * {@link java.util.Collections#nCopies(int, Object)}), sharing the pooled
+ * connections of its client.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class HttpBrowser implements Browser {
+
+    /**
+     * HTTP client.
+     */
+    private final CloseableHttpClient client;
+
+    /**
+     * Ctor. Uses at most 20 connections at the same time.
+     */
+    public HttpBrowser() {
+        this(20);
+    }
+
+    /**
+     * Ctor.
+     * @param connections Maximum number of connections used at the same
+     *  time (should be at least the number of crawl workers).
+     */
+    public HttpBrowser(final int connections) {
+        this(PooledHttpClient.create(connections));
+    }
+
+    /**
+     * Ctor.
+     * @param client HTTP client. It will be closed when this browser quits.
+     */
+    public HttpBrowser(final CloseableHttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public WebPage snapshot(final String url) throws IOException {
+        return this.page(url).snapshot();
+    }
+
+    /**
+     * Fetch and parse the page at the given url. Documents which are not
+     * HTML (images, PDFs etc) are not parsed, the page is left empty.
+     * @param url Address of the page.
+     * @return Fetched page.
+     * @throws IOException If the page could not be fetched or the server
+     *  did not answer 2xx (after following the redirects).
+     */
+    HttpWebPage page(final String url) throws IOException {
+        final HttpClientContext context = HttpClientContext.create();
+        final CloseableHttpResponse response = this.client.execute(
+            new HttpGet(url), context
+        );
+        try {
+            final String location = HttpBrowser.location(url, context);
+            final HttpEntity entity = response.getEntity();
+            final int status = response.getStatusLine().getStatusCode();
+            if(status < 200 || status >= 300) {
+                EntityUtils.consume(entity);
+                throw new IOException(
+                    "Could not fetch " + location + ", status " + status
+                );
+            }
+            final HttpWebPage page;
+            if(entity == null || !HttpBrowser.html(entity)) {
+                EntityUtils.consume(entity);
+                page = new HttpWebPage(
+                    location, Document.createShell(location)
+                );
+            } else {
+                final Charset charset = ContentType.getOrDefault(entity)
+                    .getCharset();
+                String encoding = null;
+                if(charset != null) {
+                    encoding = charset.name();
+                }
+                final InputStream content = entity.getContent();
+                try {
+                    page = new HttpWebPage(
+                        location, Jsoup.parse(content, encoding, location)
+                    );
+                } finally {
+                    content.close();
+                }
+            }
+            return page;
+        } finally {
+            response.close();
+        }
+    }
+
+    @Override
+    public void quit() {
+        try {
+            this.client.close();
+        } catch (final IOException ex) {
+            throw new IllegalStateException(
+                "Could not close the HTTP client!", ex
+            );
+        }
+    }
+
+    /**
+     * Is the entity an HTML document (text/html or application/xhtml+xml)?
+     * Entities without a content type are considered HTML.
+     * @param entity Entity.
+     * @return True or false.
+     */
+    private static boolean html(final HttpEntity entity) {
+        final ContentType type = ContentType.get(entity);
+        return type == null
+            || "text/html".equalsIgnoreCase(type.getMimeType())
+            || "application/xhtml+xml".equalsIgnoreCase(type.getMimeType());
+    }
+
+    /**
+     * Final location of the page, after redirects.
+     * @param url Requested url.
+     * @param context Context of the request.
+     * @return Url.
+     */
+    private static String location(
+        final String url, final HttpClientContext context
+    ) {
+        final List<URI> redirects = context.getRedirectLocations();
+        final String location;
+        if(redirects == null || redirects.isEmpty()) {
+            location = url;
+        } else {
+            location = redirects.get(redirects.size() - 1).toString();
+        }
+        return location;
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * POSTs the pages to an http endpoint: each batch is sent as one request,
+ * with a json array of the pages as body (gzipped, by default). The
+ * connections are pooled and kept alive between the batches. Requests
+ * which fail with a 5xx status or an I/O error are retried, waiting
+ * twice as long before each retry.<br><br>
+ * It is thread-safe; to have more batches in flight at the same time,
+ * wrap it in an {@link AsyncRepository} with as many exporters as
+ * pooled connections.<br><br>
+ * Close it when the crawl is over, to close its HTTP client.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class HttpRepository implements Repository, Closeable {
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        HttpRepository.class
+    );
+
+    /**
+     * Json mapper; thread-safe once configured.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * HTTP client.
+     */
+    private final CloseableHttpClient client;
+
+    /**
+     * Url of the endpoint.
+     */
+    private final String url;
+
+    /**
+     * Should the bodies be gzipped?
+     */
+    private final boolean gzip;
+
+    /**
+     * How many times is a failed request retried?
+     */
+    private final int retries;
+
+    /**
+     * Milliseconds to wait before the first retry.
+     */
+    private final long backoff;
+
+    /**
+     * Ctor. Uses at most 4 connections, gzips the bodies and retries
+     * a failed request 3 times, starting after half a second.
+     * @param url Url of the endpoint.
+     */
+    public HttpRepository(final String url) {
+        this(url, 4);
+    }
+
+    /**
+     * Ctor. Gzips the bodies and retries a failed request 3 times,
+     * starting after half a second.
+     * @param url Url of the endpoint.
+     * @param connections Maximum number of connections used at the same
+     *  time (should be at least the number of batches in flight).
+     */
+    public HttpRepository(final String url, final int connections) {
+        this(PooledHttpClient.create(connections), url, true, 3, 500);
+    }
+
+    /**
+     * Ctor.
+     * @param client HTTP client. It will be closed when this repository
+     *  is closed.
+     * @param url Url of the endpoint.
+     * @param gzip Should the bodies be gzipped?
+     * @param retries How many times is a failed request retried?
+     * @param backoff Milliseconds to wait before the first retry.
+     * @checkstyle ParameterNumber (5 lines)
+     */
+    public HttpRepository(
+        final CloseableHttpClient client, final String url,
+        final boolean gzip, final int retries, final long backoff
+    ) {
+        this.client = client;
+        this.url = url;
+        this.gzip = gzip;
+        this.retries = retries;
+        this.backoff = backoff;
+    }
+
+    @Override
+    public void export(final List<WebPage> pages) throws DataExportException {
+        if(pages.isEmpty()) {
+            return;
+        }
+        final HttpPost request = new HttpPost(this.url);
+        request.setEntity(new Pages(pages, this.gzip));
+        long wait = this.backoff;
+        String failure = null;
+        IOException error = null;
+        for(int attempt = 0; attempt <= this.retries; ++attempt) {
+            if(attempt > 0) {
+                LOG.warn(
+                    "POST to " + this.url + " failed (" + failure
+                    + "), retrying in " + wait + "ms..."
+                );
+                HttpRepository.sleep(wait);
+                wait = wait * 2;
+            }
+            try {
+                final CloseableHttpResponse response = this.client.execute(
+                    request
+                );
+                try {
+                    final int status = response.getStatusLine()
+                        .getStatusCode();
+                    final HttpEntity entity = response.getEntity();
+                    if(status < 300) {
+                        EntityUtils.consume(entity);
+                        return;
+                    }
+                    String body = "";
+                    if(entity != null) {
+                        body = EntityUtils.toString(entity, "UTF-8");
+                    }
+                    failure = "status " + status + ": " + body;
+                    if(status < 500) {
+                        break;
+                    }
+                } finally {
+                    response.close();
+                }
+            } catch (final IOException ex) {
+                error = ex;
+                failure = ex.getMessage();
+            }
+        }
+        LOG.error(
+            "POST to " + this.url + " failed, giving up (" + failure + ")",
+            error
+        );
+        throw new DataExportException(
+            pages.size() + " pages could not be POSTed to " + this.url
+            + " (" + failure + ")"
+        );
+    }
+
+    @Override
+    public void flush() {
+        //pages are exported synchronously, nothing to wait for
+    }
+
+    /**
+     * Close the HTTP client.
+     * @throws IOException If the client cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.client.close();
+    }
+
+    /**
+     * Wait before retrying.
+     * @param millis Milliseconds to wait.
+     * @throws DataExportException If the thread is interrupted.
+     */
+    private static void sleep(final long millis) throws DataExportException {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataExportException("Interrupted while retrying");
+        }
+    }
+
+    /**
+     * Json array of the pages, written directly to the connection and
+     * gzipped on the fly. It can be written more times, for the retries.
+     */
+    private static final class Pages extends AbstractHttpEntity {
+
+        /**
+         * Pages to send.
+         */
+        private final List<WebPage> pages;
+
+        /**
+         * Should the json be gzipped?
+         */
+        private final boolean gzip;
+
+        /**
+         * Ctor.
+         * @param pages Pages to send.
+         * @param gzip Should the json be gzipped?
+         */
+        Pages(final List<WebPage> pages, final boolean gzip) {
+            this.pages = pages;
+            this.gzip = gzip;
+            this.setContentType("application/json; charset=UTF-8");
+            if(gzip) {
+                this.setContentEncoding("gzip");
+            }
+            this.setChunked(true);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            this.writeTo(body);
+            return new ByteArrayInputStream(body.toByteArray());
+        }
+
+        @Override
+        public void writeTo(final OutputStream out) throws IOException {
+            GZIPOutputStream zipped = null;
+            OutputStream target = out;
+            if(this.gzip) {
+                zipped = new GZIPOutputStream(out, 64 * 1024);
+                target = zipped;
+            }
+            final JsonGenerator json = HttpRepository.MAPPER.getFactory()
+                .createGenerator(target, JsonEncoding.UTF8);
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            HttpRepository.MAPPER.writeValue(json, this.pages);
+            json.flush();
+            if(zipped != null) {
+                zipped.finish();
+            }
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+}
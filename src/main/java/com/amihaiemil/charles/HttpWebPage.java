@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * A web page fetched over plain HTTP, without rendering it, and parsed
+ * with Jsoup. Use it for static pages: content generated by JavaScript
+ * is not seen.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class HttpWebPage implements LivePage {
+
+    /**
+     * Address of the page.
+     */
+    private final String url;
+
+    /**
+     * Parsed HTML.
+     */
+    private final Document html;
+
+    /**
+     * Ctor.
+     * @param url Address of the page.
+     * @param html HTML of the page.
+     */
+    public HttpWebPage(final String url, final String html) {
+        this(url, Jsoup.parse(html, url));
+    }
+
+    /**
+     * Ctor.
+     * @param url Address of the page.
+     * @param html Parsed HTML of the page; relative links are resolved
+     *  against its base uri.
+     */
+    public HttpWebPage(final String url, final Document html) {
+        this.url = url;
+        this.html = html;
+    }
+
+    @Override
+    public String getName() {
+        return LiveWebPage.name(this.url);
+    }
+
+    @Override
+    public void setName(final String name) {
+        throw new UnsupportedOperationException("#setName");
+    }
+
+    @Override
+    public String getUrl() {
+        return this.url;
+    }
+
+    @Override
+    public void setUrl(final String url) {
+        throw new UnsupportedOperationException("#setUrl");
+    }
+
+    @Override
+    public String getTitle() {
+        return this.html.title();
+    }
+
+    @Override
+    public void setTitle(final String title) {
+        throw new UnsupportedOperationException("#setTitle");
+    }
+
+    @Override
+    public String getTextContent() {
+        final Element body = this.html.body();
+        final String text;
+        if(body == null) {
+            text = "";
+        } else {
+            text = body.text();
+        }
+        return text;
+    }
+
+    @Override
+    public void setTextContent(final String textContent) {
+        throw new UnsupportedOperationException("#setTextContent");
+    }
+
+    @Override
+    public Set<Link> getLinks() {
+        final Set<Link> links = new HashSet<Link>();
+        for(final Element anchor : this.html.select("a[href]")) {
+            final Link link = new Link(anchor.text(), anchor.absUrl("href"));
+            if(link.valid(this.url)) {
+                links.add(link);
+            }
+        }
+        return links;
+    }
+
+    @Override
+    public void setLinks(final Set<Link> links) {
+        throw new UnsupportedOperationException("#setLinks");
+    }
+
+    /**
+     * Parsed HTML of this page.
+     * @return Jsoup Document.
+     */
+    Document html() {
+        return this.html;
+    }
+
+    @Override
+    public WebPage snapshot() {
+        return new SnapshotWebPage(this);
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.IOException;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Browser which fetches every page over plain HTTP first and renders it
+ * with a WebDriver only if it looks like its content is generated by
+ * JavaScript:
+ * <ul>
+ *   <li>the body has elements, but no text;</li>
+ *   <li>there is an empty mount point of a single page app
+ *   (e.g. &lt;div id="root"&gt;&lt;/div&gt;, &lt;app-root&gt;) or
+ *   an AngularJS template;</li>
+ *   <li>there is a noscript tag with text, asking for JavaScript;</li>
+ *   <li>the url matches one of the given render patterns.</li>
+ * </ul>
+ * Not thread-safe, because of the WebDriver; use one per crawl worker.
+ * The workers can share the same {@link HttpBrowser}, which is not quit
+ * by {@link #quit()}: whoever created it quits it after the crawl.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class HybridBrowser implements Browser {
+
+    /**
+     * Slf4J Logger.
+     */
+    private static final Logger LOG = LoggerFactory
+        .getLogger(HybridBrowser.class);
+
+    /**
+     * Usual mount points of single page apps (React, Vue, Angular,
+     * Next.js, Nuxt.js, Ember).
+     */
+    private static final String MOUNTS = "#root, #app, #__next, #__nuxt, "
+        + "app-root, [data-reactroot], [ng-version], [ng-app], .ember-view";
+
+    /**
+     * Browser for the static fetch.
+     */
+    private final HttpBrowser http;
+
+    /**
+     * WebDriver for the pages which need rendering.
+     */
+    private final WebDriver driver;
+
+    /**
+     * Urls which are always rendered.
+     */
+    private final IgnoredPatterns render;
+
+    /**
+     * Ctor.
+     * @param http Browser for the static fetch. It can be shared by more
+     *  HybridBrowsers and it is not quit by this one.
+     * @param driver WebDriver for the pages which need rendering.
+     */
+    public HybridBrowser(final HttpBrowser http, final WebDriver driver) {
+        this(http, driver, new IgnoredPatterns());
+    }
+
+    /**
+     * Ctor.
+     * @param http Browser for the static fetch. It can be shared by more
+     *  HybridBrowsers and it is not quit by this one.
+     * @param driver WebDriver for the pages which need rendering.
+     * @param render Patterns of the urls which should always be rendered
+     *  (same syntax as the ignored patterns of a crawl).
+     */
+    public HybridBrowser(
+        final HttpBrowser http, final WebDriver driver,
+        final IgnoredPatterns render
+    ) {
+        this.http = http;
+        this.driver = driver;
+        this.render = render;
+    }
+
+    @Override
+    public WebPage snapshot(final String url) throws IOException {
+        final WebPage page;
+        if(this.render.contains(url)) {
+            page = this.rendered(url);
+        } else {
+            final HttpWebPage fetched = this.http.page(url);
+            if(HybridBrowser.dynamic(fetched.html())) {
+                LOG.debug("Page " + url + " needs rendering.");
+                page = this.rendered(url);
+            } else {
+                page = fetched.snapshot();
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Quit the WebDriver. The HttpBrowser may still be used by other
+     * HybridBrowsers, so it is not quit.
+     */
+    @Override
+    public void quit() {
+        this.driver.quit();
+    }
+
+    /**
+     * Render the page with the WebDriver.
+     * @param url Address of the page.
+     * @return Snapshot of the rendered page.
+     */
+    private WebPage rendered(final String url) {
+        this.driver.get(url);
+        return new LiveWebPage(this.driver).snapshot();
+    }
+
+    /**
+     * Does the statically fetched HTML look like its content is generated
+     * by JavaScript? An empty body (e.g. a document which is not HTML)
+     * has nothing to render.
+     * @param html Fetched HTML.
+     * @return True if the page should be rendered.
+     */
+    static boolean dynamic(final Document html) {
+        final Element body = html.body();
+        if(body == null || body.childNodeSize() == 0) {
+            return false;
+        }
+        boolean dynamic = body.text().trim().isEmpty()
+            || body.text().contains("{{");
+        if(!dynamic) {
+            for(final Element mount : html.select(HybridBrowser.MOUNTS)) {
+                if(mount.children().isEmpty()
+                    && mount.text().trim().isEmpty()) {
+                    dynamic = true;
+                    break;
+                }
+            }
+        }
+        if(!dynamic) {
+            for(final Element noscript : html.select("noscript")) {
+                if(!noscript.text().trim().isEmpty()) {
+                    dynamic = true;
+                    break;
+                }
+            }
+        }
+        return dynamic;
+    }
+}
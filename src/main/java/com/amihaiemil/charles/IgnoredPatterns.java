@@ -27,30 +27,154 @@
 package com.amihaiemil.charles;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 /**
- * Contains url patterns that should be ignored (not crawled).
+ * Contains url patterns that should be ignored (not crawled).<br><br>
+ * A url is ignored if it equals a pattern (ignoring case), if it matches
+ * an asterisk pattern (e.g. *.js) or if it matches a pattern as a regex.
+ * The patterns are compiled once, at construction time: exact patterns go
+ * into hash sets, the parts of all the asterisk patterns are searched
+ * together in one pass over the url and the regexes are joined into a
+ * single alternation, where possible.<br><br>
+ * Optionally, the decisions for the most recently checked urls can be
+ * cached (LRU), since the same links (menus, footers) appear on every page.
+ * This class is thread-safe.
  * @author Mihai Andronache (amihaiemil@gmail.com)
  * @version $Id$
  * @since 1.0.0
  */
 public final class IgnoredPatterns {
 
-    private List<String> patterns;
+    /**
+     * Index of an empty part of an asterisk pattern (always found, at 0).
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Patterns, case-folded, for the exact (case insensitive) match.
+     */
+    private final Set<String> exact;
+
+    /**
+     * Trimmed patterns without regex metacharacters; as regexes, they
+     * only match themselves.
+     */
+    private final Set<String> literals;
+
+    /**
+     * Asterisk patterns, as ids of their parts in the parts index.
+     */
+    private final List<int[]> asterisks;
+
+    /**
+     * Is there an asterisk pattern made only of asterisks?
+     */
+    private final boolean matchAll;
+
+    /**
+     * Index of the parts of all the asterisk patterns.
+     */
+    private final SubstringIndex parts;
+
+    /**
+     * Regexes, compiled.
+     */
+    private final List<Pattern> regexes;
+
+    /**
+     * Cached decisions, by url; null if there is no cache.
+     */
+    private final Map<String, Boolean> cache;
+
+    /**
+     * Number of decisions found in the cache.
+     */
+    private final AtomicLong hits;
+
+    /**
+     * Number of decisions not found in the cache.
+     */
+    private final AtomicLong misses;
 
     public IgnoredPatterns() {
         this(new ArrayList<String>());
     }
 
     public IgnoredPatterns(List<String> patterns) {
-        this.patterns = new ArrayList<String>();
-        for(String pattern : patterns) {
-            this.patterns.add(pattern);
+        this(patterns, 0);
+    }
+
+    /**
+     * Ctor.
+     * @param patterns Patterns.
+     * @param cache How many decisions to remember (least recently used
+     *  ones are evicted first); 0 means no cache.
+     */
+    public IgnoredPatterns(List<String> patterns, final int cache) {
+        this.exact = new HashSet<String>();
+        this.literals = new HashSet<String>();
+        this.asterisks = new ArrayList<int[]>();
+        this.regexes = new ArrayList<Pattern>();
+        final Map<String, Integer> ids = new HashMap<String, Integer>();
+        final List<String> substrings = new ArrayList<String>();
+        final StringBuilder alternation = new StringBuilder();
+        boolean all = false;
+        for(final String pattern : patterns) {
+            this.exact.add(IgnoredPatterns.fold(pattern));
+            final String trimmed = pattern.trim();
+            if(trimmed.contains("*")) {
+                final String[] split = trimmed.split("\\*");
+                final int[] compiled = new int[split.length];
+                for(int idx = 0; idx < split.length; ++idx) {
+                    if(split[idx].isEmpty()) {
+                        compiled[idx] = IgnoredPatterns.EMPTY;
+                    } else {
+                        Integer id = ids.get(split[idx]);
+                        if(id == null) {
+                            id = substrings.size();
+                            ids.put(split[idx], id);
+                            substrings.add(split[idx]);
+                        }
+                        compiled[idx] = id;
+                    }
+                }
+                all = all || compiled.length == 0;
+                this.asterisks.add(compiled);
+            }
+            this.regex(trimmed, alternation);
+        }
+        if(alternation.length() > 0) {
+            this.regexes.add(Pattern.compile(alternation.toString()));
         }
+        this.matchAll = all;
+        this.parts = new SubstringIndex(substrings);
+        if(cache > 0) {
+            this.cache = Collections.synchronizedMap(
+                new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+                    @Override
+                    protected boolean removeEldestEntry(
+                        final Map.Entry<String, Boolean> eldest
+                    ) {
+                        return this.size() > cache;
+                    }
+                }
+            );
+        } else {
+            this.cache = null;
+        }
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
     }
 
     /**
@@ -59,63 +183,161 @@ public final class IgnoredPatterns {
      * @return ture if it matches any pattern, false otherwise.
      */
     public boolean contains(String url) {
-        for(String p : patterns) {
-            if(p.equalsIgnoreCase(url)) {
-                return true;
-            }            
-            if(matchesAsteriskPattern(p.trim(), url)){
-                return true;
-            }
-            if(matchesRegex(p.trim(), url)) {
-                return true;
-            }
+        if(this.cache == null) {
+            return this.matches(url);
         }
-        return false;
+        Boolean ignored = this.cache.get(url);
+        if(ignored == null) {
+            this.misses.incrementAndGet();
+            ignored = this.matches(url);
+            this.cache.put(url, ignored);
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return ignored;
     }
-    
+
     /**
-     * Test against asterisk pattern (e.g. *.js) 
-     * @param p pattern.
+     * How many decisions were served from the cache?
+     * @return Number of cache hits; always 0 if there is no cache.
+     */
+    public long hits() {
+        return this.hits.get();
+    }
+
+    /**
+     * How many decisions had to be computed with the cache on?
+     * @return Number of cache misses; always 0 if there is no cache.
+     */
+    public long misses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Match the url against all the compiled patterns.
+     * @param url Tested url.
+     * @return True if it matches any pattern, false otherwise.
+     */
+    private boolean matches(final String url) {
+        return this.matchAll
+            || this.exact.contains(IgnoredPatterns.fold(url))
+            || this.literals.contains(url)
+            || this.matchesAsteriskPattern(url)
+            || this.matchesRegex(url);
+    }
+
+    /**
+     * Test against the asterisk patterns (e.g. *.js). The parts of a
+     * pattern have to be found in the url and the first occurrence of
+     * each part cannot be before the first occurrence of a previous part.
      * @param url Tested url string.
      * @return True if it matches.
      */
-    private boolean matchesAsteriskPattern(String p, String url) {
-        if(p.contains("*")) {
-            List<Integer> partsIndexes = new ArrayList<Integer>();
-            String[] parts = p.split("\\*");
-            for(int i=0;i<parts.length;i++) {
-                if(url.contains(parts[i])) {
-                    int indexOfPart = url.indexOf(parts[i]);
-                    for(Integer partIndex : partsIndexes) {
-                        if(partIndex > indexOfPart) {
-                            return false;
-                        }
-                    }
-                    partsIndexes.add(indexOfPart);
+    private boolean matchesAsteriskPattern(String url) {
+        if(this.asterisks.isEmpty()) {
+            return false;
+        }
+        final int[] first = this.parts.firstOccurrences(url);
+        for(final int[] pattern : this.asterisks) {
+            boolean matches = true;
+            int previous = 0;
+            for(final int id : pattern) {
+                final int index;
+                if(id == IgnoredPatterns.EMPTY) {
+                    index = 0;
                 } else {
-                    return false;
+                    index = first[id];
+                }
+                if(index == -1 || index < previous) {
+                    matches = false;
+                    break;
                 }
+                previous = index;
+            }
+            if(matches) {
+                return true;
             }
-        } else {
-            return false;
         }
-        
-        return true;
+        return false;
     }
-    
+
     /**
-     * Test against regex.
-     * @param p pattern.
+     * Test against the regexes.
      * @param url Tested url string.
      * @return True if it matches.
      */
-    private boolean matchesRegex(String p, String url) {
+    private boolean matchesRegex(String url) {
+        for(final Pattern regex : this.regexes) {
+            if(regex.matcher(url).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compile the given pattern as a regex. Invalid regexes are skipped,
+     * regexes without metacharacters become literals and the ones
+     * which can be safely grouped are added to the alternation.
+     * @param pattern Trimmed pattern.
+     * @param alternation Alternation of the simple regexes.
+     */
+    private void regex(final String pattern, final StringBuilder alternation) {
+        final Pattern regex;
         try {
-            Pattern pattern = Pattern.compile(p);
-            Matcher matcher = pattern.matcher(url);
-            return matcher.matches();
+            regex = Pattern.compile(pattern);
         } catch (PatternSyntaxException ex) {
-            return false;
+            return;
+        }
+        boolean literal = true;
+        for(int idx = 0; idx < pattern.length() && literal; ++idx) {
+            literal = "\\^$.|?*+()[]{}".indexOf(pattern.charAt(idx)) == -1;
+        }
+        if(literal) {
+            this.literals.add(pattern);
+        } else if(IgnoredPatterns.groupable(pattern)) {
+            if(alternation.length() > 0) {
+                alternation.append('|');
+            }
+            alternation.append("(?:").append(pattern).append(')');
+        } else {
+            this.regexes.add(regex);
+        }
+    }
+
+    /**
+     * Can the regex be put in a group of an alternation without changing
+     * its meaning? Regexes with back references, quotes or inline flags
+     * (which could turn on comments) are kept apart.
+     * @param pattern Regex.
+     * @return True or false.
+     */
+    private static boolean groupable(final String pattern) {
+        boolean groupable = !pattern.contains("(?") && !pattern.contains("\\Q");
+        for(int idx = 0; idx < pattern.length() - 1 && groupable; ++idx) {
+            if(pattern.charAt(idx) == '\\') {
+                final char next = pattern.charAt(idx + 1);
+                groupable = next != 'k' && (next < '1' || next > '9');
+                idx = idx + 1;
+            }
+        }
+        return groupable;
+    }
+
+    /**
+     * Fold the case of the given string, so that two strings are equal
+     * ignoring case (see {@link String#equalsIgnoreCase(String)}) only if
+     * their folded forms are equal.
+     * @param value String.
+     * @return Folded string.
+     */
+    private static String fold(final String value) {
+        final char[] chars = new char[value.length()];
+        for(int idx = 0; idx < chars.length; ++idx) {
+            chars[idx] = Character.toLowerCase(
+                Character.toUpperCase(value.charAt(idx))
+            );
         }
+        return new String(chars);
     }
 }
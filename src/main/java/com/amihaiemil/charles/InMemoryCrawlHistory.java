@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Crawl history kept only in memory, for the duration of the program.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class InMemoryCrawlHistory implements CrawlHistory {
+
+    /**
+     * Time, hash and lastmod of each crawled page, by url.
+     */
+    private final Map<String, long[]> pages = new HashMap<String, long[]>();
+
+    @Override
+    public long crawled(final String url) {
+        final long[] page = this.pages.get(url);
+        final long time;
+        if(page == null) {
+            time = -1;
+        } else {
+            time = page[0];
+        }
+        return time;
+    }
+
+    @Override
+    public long hash(final String url) {
+        final long[] page = this.pages.get(url);
+        final long hash;
+        if(page == null) {
+            hash = 0;
+        } else {
+            hash = page[1];
+        }
+        return hash;
+    }
+
+    @Override
+    public long lastmod(final String url) {
+        final long[] page = this.pages.get(url);
+        final long lastmod;
+        if(page == null) {
+            lastmod = -1;
+        } else {
+            lastmod = page[2];
+        }
+        return lastmod;
+    }
+
+    @Override
+    public void record(
+        final String url, final long time, final long hash,
+        final long lastmod
+    ) {
+        this.pages.put(url, new long[] {time, hash, lastmod});
+    }
+
+    @Override
+    public void save() {
+        //nothing to persist
+    }
+
+    /**
+     * Urls of the crawled pages.
+     * @return Set of urls.
+     */
+    Set<String> urls() {
+        return this.pages.keySet();
+    }
+}
@@ -60,4 +60,9 @@ public final class InMemoryRepository implements Repository {
             this.pgs.add(page);
         }
     }
+
+    @Override
+    public void flush() {
+        //pages are exported synchronously, nothing to wait for
+    }
 }
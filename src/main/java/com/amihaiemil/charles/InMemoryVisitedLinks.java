@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Visited links kept in a HashSet. Fastest, but the canonical href of
+ * every Link stays on the heap until the crawl is over. Links are equal
+ * if their hrefs have the same canonical form (see
+ * {@link UrlCanonicalizer}), which can be configured.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class InMemoryVisitedLinks implements VisitedLinks {
+
+    /**
+     * Canonical hrefs of the links.
+     */
+    private final Set<String> links = new HashSet<String>();
+
+    /**
+     * Canonicalizer of the hrefs.
+     */
+    private final UrlCanonicalizer canonicalizer;
+
+    /**
+     * Ctor.
+     */
+    public InMemoryVisitedLinks() {
+        this(new UrlCanonicalizer());
+    }
+
+    /**
+     * Ctor.
+     * @param canonicalizer Canonicalizer of the hrefs.
+     */
+    public InMemoryVisitedLinks(final UrlCanonicalizer canonicalizer) {
+        this.canonicalizer = canonicalizer;
+    }
+
+    @Override
+    public boolean add(final Link link) {
+        return this.links.add(link.canonical(this.canonicalizer));
+    }
+
+    @Override
+    public boolean contains(final Link link) {
+        return this.links.contains(link.canonical(this.canonicalizer));
+    }
+
+    @Override
+    public void clear() {
+        this.links.clear();
+    }
+}
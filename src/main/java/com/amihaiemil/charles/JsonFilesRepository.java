@@ -25,40 +25,126 @@
  */
 package com.amihaiemil.charles;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonGenerationException;
-import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * Exports each page into the specified file, in json format.
+ * Each page is first written to a temporary file, which then replaces
+ * the page's file, so a crash never leaves half-written json behind.<br>
+ * The pages of a batch can also be written in parallel, by a fixed number
+ * of threads; the batch is exported only if all its pages were written.
  * @author Mihai Andronache (amihaiemil@gmail.com)
  *
  */
 public final class JsonFilesRepository implements Repository {
     private static final Logger LOG = LoggerFactory.getLogger(JsonFilesRepository.class);
 
+    /**
+     * Writer of indented json. ObjectWriters are immutable and thread-safe,
+     * so they are created only once.
+     */
+    private static final ObjectWriter INDENTED =
+        new ObjectMapper().writerWithDefaultPrettyPrinter();
+
+    /**
+     * Writer of compact json.
+     */
+    private static final ObjectWriter COMPACT = new ObjectMapper().writer();
+
+    /**
+     * Size of the write buffer.
+     */
+    private static final int BUFFER = 64 * 1024;
+
     /**
      * Directory where the json files should be stored.
      */
     private String dir;
-    
+
     /**
-     * Constructor.
+     * Writer of the pages.
+     */
+    private final ObjectWriter writer;
+
+    /**
+     * How many pages are written at the same time.
+     */
+    private final int threads;
+
+    /**
+     * Compression of the json files.
+     */
+    private final Compression compression;
+
+    /**
+     * Constructor. The json files are indented.
      * @param dir Directory where the json files should be stored.
      */
     public JsonFilesRepository(String dir) {
+        this(dir, false);
+    }
+
+    /**
+     * Constructor.
+     * @param dir Directory where the json files should be stored.
+     * @param compact Should the json be compact (not indented)?
+     */
+    public JsonFilesRepository(String dir, boolean compact) {
+        this(dir, compact, 1);
+    }
+
+    /**
+     * Constructor.
+     * @param dir Directory where the json files should be stored.
+     * @param compact Should the json be compact (not indented)?
+     * @param threads How many pages are written at the same time?
+     */
+    public JsonFilesRepository(String dir, boolean compact, int threads) {
+        this(dir, compact, threads, Compression.NONE);
+    }
+
+    /**
+     * Constructor.
+     * @param dir Directory where the json files should be stored.
+     * @param compact Should the json be compact (not indented)?
+     * @param threads How many pages are written at the same time?
+     * @param compression Compression of the json files; the files are
+     *  named after the pages plus .json and the compression's extension.
+     */
+    public JsonFilesRepository(
+        String dir, boolean compact, int threads, Compression compression
+    ) {
+        this.compression = compression;
         this.dir = dir;
         if(!dir.endsWith("/")) {
             this.dir += "/";
         }
+        if(compact) {
+            this.writer = JsonFilesRepository.COMPACT;
+        } else {
+            this.writer = JsonFilesRepository.INDENTED;
+        }
+        this.threads = threads;
     }
 
     /**
@@ -67,29 +153,131 @@ public final class JsonFilesRepository implements Repository {
      * @throws DataExportException If something goes wrong.
      */
     public void export(List<WebPage> pages) throws DataExportException {
-        for(WebPage page : pages){
-            ObjectMapper jsonMapper = new ObjectMapper();
-            jsonMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        if(this.threads <= 1) {
+            for(WebPage page : pages){
+                try {
+                    this.write(page);
+                } catch (IOException e) {
+                    LOG.error(e.getMessage(), e);
+                    throw new DataExportException(
+                        "Page with url " + page.getUrl() + " could not be exported! Check the logs for errors.");
+                }
+            }
+        } else {
+            this.exportParallel(pages);
+        }
+    }
+
+    @Override
+    public void flush() {
+        //pages are exported synchronously, nothing to wait for
+    }
+
+    /**
+     * Write the pages in parallel and wait for all of them. Pages with the
+     * same name would be written to the same file, so only the last one
+     * of them is written, like when they are written one by one.<br>
+     * The threads are started for each batch and stopped when it is
+     * written, so no threads are left behind when the crawl is over.
+     * @param pages Pages to export.
+     * @throws DataExportException If any page could not be written; the
+     *  message contains the urls of all such pages.
+     */
+    private void exportParallel(List<WebPage> pages)
+        throws DataExportException {
+        final Map<String, WebPage> named = new LinkedHashMap<String, WebPage>();
+        for(final WebPage page : pages) {
+            named.put(page.getName(), page);
+        }
+        final List<WebPage> written = new ArrayList<WebPage>(named.values());
+        final ExecutorService writers = Executors.newFixedThreadPool(
+            Math.min(this.threads, Math.max(written.size(), 1)),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable task) {
+                    final Thread thread = new Thread(
+                        task, "charles-json-files"
+                    );
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }
+        );
+        final List<String> failed = new ArrayList<String>();
+        boolean interrupted = false;
+        try {
+            final List<Future<Void>> writes = new ArrayList<Future<Void>>();
+            for(final WebPage page : written) {
+                writes.add(
+                    writers.submit(
+                        new Callable<Void>() {
+                            @Override
+                            public Void call() throws IOException {
+                                JsonFilesRepository.this.write(page);
+                                return null;
+                            }
+                        }
+                    )
+                );
+            }
+            for(int idx = 0; idx < writes.size(); ++idx) {
+                try {
+                    writes.get(idx).get();
+                } catch (final ExecutionException ex) {
+                    LOG.error(ex.getCause().getMessage(), ex.getCause());
+                    failed.add(written.get(idx).getUrl());
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                    failed.add(written.get(idx).getUrl());
+                }
+            }
+        } finally {
+            writers.shutdown();
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if(!failed.isEmpty()) {
+            throw new DataExportException(
+                "Pages with urls " + failed + " could not be exported! Check the logs for errors.");
+        }
+    }
+
+    /**
+     * Write the page to a temporary file, then rename it to the page's file.
+     * If anything fails, the temporary file is deleted.
+     * @param page Page to write.
+     * @throws IOException If something goes wrong.
+     */
+    private void write(WebPage page) throws IOException {
+        final String name = page.getName() + ".json"
+            + this.compression.extension();
+        final File json = new File(this.dir + name);
+        final File temp = new File(this.dir + name + ".tmp");
+        final OutputStream file = new FileOutputStream(temp);
+        boolean written = false;
+        try {
+            OutputStream out = file;
             try {
-                File jsonFile = new File(this.dir + page.getName() + ".json");
-                if(!jsonFile.exists()) {
-                    jsonFile.createNewFile();
-                } else {
-                    jsonFile.delete();
+                out = new BufferedOutputStream(
+                    this.compression.compress(file),
+                    JsonFilesRepository.BUFFER
+                );
+                this.writer.writeValue(out, page);
+            } finally {
+                out.close();
+            }
+            if(!temp.renameTo(json)) {
+                if(!json.delete() || !temp.renameTo(json)) {
+                    throw new IOException(
+                        "Could not rename " + temp + " to " + json
+                    );
                 }
-                jsonMapper.writeValue(jsonFile, page);
-            } catch (JsonGenerationException e) {
-                LOG.error(e.getMessage(), e);
-                throw new DataExportException(
-                    "Page with url " + page.getUrl() + " could not be exported! Check the logs for errors.");
-            } catch (JsonMappingException e) {
-                LOG.error(e.getMessage(), e);
-                throw new DataExportException(
-                    "Page with url " + page.getUrl() + " could not be exported! Check the logs for errors.");
-            } catch (IOException e) {
-                LOG.error(e.getMessage(), e);
-                throw new DataExportException(
-                    "Page with url " + page.getUrl() + " could not be exported! Check the logs for errors.");
+            }
+            written = true;
+        } finally {
+            if(!written) {
+                temp.delete();
             }
         }
     }
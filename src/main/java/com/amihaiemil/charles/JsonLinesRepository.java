@@ -0,0 +1,345 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Exports the pages in JSON Lines format (one compact json object per
+ * line), appended to segment files: pages-00000.jsonl, pages-00001.jsonl
+ * etc. A new segment is started when the current one reaches the
+ * configured size.<br><br>
+ * The pages of each batch (or each page, if it is synced alone) are
+ * written as one frame, which is compressed if a {@link Compression} is
+ * given (the segments are then named e.g. pages-00000.jsonl.gz). Every
+ * exported page is also appended to index.tsv, as a line with the
+ * segment, the byte offset of its frame in the segment, the offset and
+ * length of the page's json in the (decompressed) frame, followed by its
+ * url, all separated by tabs. Exports are sequential writes and the
+ * output can be read in bulk, segment by segment, or page by page
+ * through the index.<br><br>
+ * The repository continues the last segment if the directory already
+ * contains some. It is thread-safe.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class JsonLinesRepository implements Repository {
+
+    /**
+     * When are the written pages forced to the disk?
+     */
+    public enum Sync {
+        /**
+         * Never, the operating system decides. Fastest, but the last pages
+         * may be lost if the machine crashes.
+         */
+        NEVER,
+        /**
+         * After each exported batch.
+         */
+        BATCH,
+        /**
+         * After each page. Slowest.
+         */
+        PAGE
+    }
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        JsonLinesRepository.class
+    );
+
+    /**
+     * Writer of compact json; immutable and thread-safe.
+     */
+    private static final ObjectWriter JSON = new ObjectMapper().writer();
+
+    /**
+     * Name of the index file.
+     */
+    private static final String INDEX = "index.tsv";
+
+    /**
+     * Directory of the segments.
+     */
+    private final File dir;
+
+    /**
+     * Maximum size of a segment, in bytes. A segment may be a little
+     * larger, since a page is never split between segments. Pages not
+     * written yet are counted uncompressed, so compressed segments
+     * may be a little smaller.
+     */
+    private final long size;
+
+    /**
+     * Sync policy.
+     */
+    private final Sync sync;
+
+    /**
+     * Compression of the frames.
+     */
+    private final Compression compression;
+
+    /**
+     * Number of the current segment; -1 before the first export.
+     */
+    private int segment;
+
+    /**
+     * Size of the current segment, in bytes written to the disk.
+     */
+    private long offset;
+
+    /**
+     * Ctor. Segments of 64MB, synced after each batch.
+     * @param dir Directory of the segments.
+     */
+    public JsonLinesRepository(final String dir) {
+        this(dir, 64L * 1024 * 1024);
+    }
+
+    /**
+     * Ctor. Segments are synced after each batch.
+     * @param dir Directory of the segments.
+     * @param size Size of a segment, in bytes.
+     */
+    public JsonLinesRepository(final String dir, final long size) {
+        this(dir, size, Sync.BATCH);
+    }
+
+    /**
+     * Ctor.
+     * @param dir Directory of the segments.
+     * @param size Size of a segment, in bytes.
+     * @param sync When are the pages forced to the disk?
+     */
+    public JsonLinesRepository(
+        final String dir, final long size, final Sync sync
+    ) {
+        this(dir, size, sync, Compression.NONE);
+    }
+
+    /**
+     * Ctor.
+     * @param dir Directory of the segments.
+     * @param size Size of a segment, in bytes written to the disk.
+     * @param sync When are the pages forced to the disk?
+     * @param compression Compression of the segments.
+     */
+    public JsonLinesRepository(
+        final String dir, final long size, final Sync sync,
+        final Compression compression
+    ) {
+        this.compression = compression;
+        this.dir = new File(dir);
+        this.size = size;
+        this.sync = sync;
+        this.segment = -1;
+    }
+
+    @Override
+    public synchronized void export(final List<WebPage> pages)
+        throws DataExportException {
+        if(pages.isEmpty()) {
+            return;
+        }
+        try {
+            if(this.segment < 0) {
+                this.last();
+            }
+            FileOutputStream out = this.open();
+            final FileOutputStream index = new FileOutputStream(
+                new File(this.dir, JsonLinesRepository.INDEX), true
+            );
+            try {
+                final ByteArrayOutputStream lines =
+                    new ByteArrayOutputStream();
+                final List<String> entries = new ArrayList<String>();
+                for(final WebPage page : pages) {
+                    if(this.offset + lines.size() >= this.size
+                        && this.offset + lines.size() > 0) {
+                        this.write(out, lines, index, entries);
+                        out.close();
+                        this.segment = this.segment + 1;
+                        this.offset = 0;
+                        out = this.open();
+                    }
+                    final int start = lines.size();
+                    JsonLinesRepository.JSON.writeValue(lines, page);
+                    final int length = lines.size() - start;
+                    lines.write('\n');
+                    entries.add(start + "\t" + length + "\t" + page.getUrl());
+                    if(this.sync == Sync.PAGE) {
+                        this.write(out, lines, index, entries);
+                    }
+                }
+                this.write(out, lines, index, entries);
+            } finally {
+                out.close();
+                index.close();
+            }
+        } catch (final IOException ex) {
+            LOG.error(ex.getMessage(), ex);
+            this.segment = -1;
+            throw new DataExportException(
+                "Pages could not be exported to " + this.dir
+                + "! Check the logs for errors."
+            );
+        }
+    }
+
+    @Override
+    public void flush() {
+        //pages are exported synchronously, nothing to wait for
+    }
+
+    /**
+     * Write the buffered lines as one frame and their index entries, then
+     * force them to the disk if the sync policy says so. The segment is
+     * written first, so the index never points to a page which is not in
+     * its segment. If the frame or its entries cannot be written, the
+     * segment and the index are truncated back to where the frame started,
+     * so no partial frame is left to corrupt the (compressed) segment.
+     * @param out Current segment.
+     * @param lines Buffered lines.
+     * @param index Index.
+     * @param entries Index entries of the buffered lines, relative
+     *  to the frame.
+     * @throws IOException If something goes wrong.
+     * @checkstyle ParameterNumber (5 lines)
+     */
+    private void write(
+        final FileOutputStream out, final ByteArrayOutputStream lines,
+        final FileOutputStream index, final List<String> entries
+    ) throws IOException {
+        if(lines.size() > 0) {
+            final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            final OutputStream compressed = this.compression.compress(frame);
+            try {
+                lines.writeTo(compressed);
+            } finally {
+                compressed.close();
+            }
+            lines.reset();
+            final StringBuilder indexed = new StringBuilder();
+            for(final String entry : entries) {
+                indexed.append(this.segment).append('\t')
+                    .append(this.offset).append('\t')
+                    .append(entry).append('\n');
+            }
+            entries.clear();
+            final long mark = index.getChannel().size();
+            try {
+                frame.writeTo(out);
+                if(this.sync != Sync.NEVER) {
+                    out.getChannel().force(false);
+                }
+                index.write(indexed.toString().getBytes("UTF-8"));
+                if(this.sync != Sync.NEVER) {
+                    index.getChannel().force(false);
+                }
+            } catch (final IOException ex) {
+                JsonLinesRepository.truncate(out, this.offset);
+                JsonLinesRepository.truncate(index, mark);
+                throw ex;
+            }
+            this.offset = this.offset + frame.size();
+        }
+    }
+
+    /**
+     * Truncate a file after a failed write. A failure to truncate is only
+     * logged, so the original error is the one reported.
+     * @param file File.
+     * @param length Length to truncate the file to.
+     */
+    private static void truncate(
+        final FileOutputStream file, final long length
+    ) {
+        try {
+            file.getChannel().truncate(length);
+        } catch (final IOException ex) {
+            LOG.warn("Could not truncate a partially written file", ex);
+        }
+    }
+
+    /**
+     * Find the last segment in the directory, to continue it.
+     * @throws IOException If the directory cannot be created.
+     */
+    private void last() throws IOException {
+        if(!this.dir.exists() && !this.dir.mkdirs()) {
+            throw new IOException("Could not create " + this.dir);
+        }
+        int last = 0;
+        while(this.file(last + 1).exists()) {
+            last = last + 1;
+        }
+        this.segment = last;
+        this.offset = this.file(last).length();
+    }
+
+    /**
+     * Open the current segment, to append to it.
+     * @return FileOutputStream.
+     * @throws IOException If the segment cannot be opened.
+     */
+    private FileOutputStream open() throws IOException {
+        return new FileOutputStream(this.file(this.segment), true);
+    }
+
+    /**
+     * File of a segment.
+     * @param segment Number of the segment.
+     * @return File.
+     */
+    private File file(final int segment) {
+        return new File(
+            this.dir,
+            String.format(Locale.ENGLISH, "pages-%05d.jsonl", segment)
+            + this.compression.extension()
+        );
+    }
+}
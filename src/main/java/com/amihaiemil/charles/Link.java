@@ -42,6 +42,17 @@ public final class Link {
      */
     private String href;
 
+    /**
+     * Cached canonical form of the href.
+     */
+    private String canonical;
+
+    /**
+     * Canonicalizer of the hrefs.
+     */
+    private static final UrlCanonicalizer CANONICALIZER =
+        new UrlCanonicalizer();
+
     public Link() {
         this("", "");
     }
@@ -65,29 +76,48 @@ public final class Link {
 
     public void setHref(final String href) {
         this.href = href;
+        this.canonical = null;
+    }
+
+    /**
+     * Canonical form of the href, which is used as identity of this Link
+     * (see {@link UrlCanonicalizer}). It is computed only once.
+     * @return Canonical href or null if the href is null.
+     */
+    public String canonical() {
+        String key = this.canonical;
+        if(key == null && this.href != null) {
+            key = Link.CANONICALIZER.canonical(this.href);
+            this.canonical = key;
+        }
+        return key;
+    }
+
+    /**
+     * Canonical form of the href, given by the specified canonicalizer
+     * (e.g. one which also sorts the query parameters). Only the default
+     * canonical form is cached (see {@link #canonical()}).
+     * @param canonicalizer Canonicalizer.
+     * @return Canonical href or null if the href is null.
+     */
+    public String canonical(final UrlCanonicalizer canonicalizer) {
+        final String key;
+        if(Link.CANONICALIZER.equals(canonicalizer)) {
+            key = this.canonical();
+        } else {
+            key = canonicalizer.canonical(this.href);
+        }
+        return key;
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        if (this.href == null) {
-            result = prime * result + 0;
+        final String key = this.canonical();
+        final int result;
+        if(key == null) {
+            result = 0;
         } else {
-            if (this.href.contains("#")) {
-                result = new Link(
-                	         "", this.href.substring(0, this.href.indexOf("#"))
-                	     ).hashCode();
-            } else {
-                if (this.href.endsWith("/")) {
-                    result = prime
-                            * result
-                            + this.href.substring(0, this.href.length() - 1)
-                                    .hashCode();
-                } else {
-                    result = prime * result + this.href.hashCode();
-                }
-            }
+            result = key.hashCode();
         }
         return result;
     }
@@ -97,42 +127,15 @@ public final class Link {
         if (this == obj) {
             return true;
         }
-        if (obj == null) {
+        if (obj == null || getClass() != obj.getClass()) {
             return false;
         }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        Link other = (Link) obj;
-        if (this.href == null) {
-            if (other.href != null)
-                return false;
-        } else {
-            // get rid of any # fragment
-            if (this.href.contains("#") && other.href.contains("#")) {
-                return new Link("", this.href.substring(0, href.indexOf("#")))
-                        .equals(new Link("", other.href.substring(0,
-                                other.href.indexOf("#"))));
-            } else if (this.href.contains("#")) {
-                return new Link("", this.href.substring(0, href.indexOf("#")))
-                        .equals(new Link("", other.href));
-            } else if (other.href.contains("#")) {
-                return new Link("", this.href).equals(new Link("", other.href
-                        .substring(0, other.href.indexOf("#"))));
-            }
-
-            if (this.href.endsWith("/") && other.href.endsWith("/")) {
-                return this.href.substring(0, this.href.length() - 1).equals(
-                        other.href.substring(0, other.href.length() - 1));
-            } else if (this.href.endsWith("/")) {
-                return this.href.substring(0, href.length() - 1).equals(
-                        other.href);
-            } else if (other.href.endsWith("/")) {
-                return this.href.equals(other.href.substring(0,
-                        other.href.length() - 1));
-            }
+        final String key = this.canonical();
+        final String other = ((Link) obj).canonical();
+        if (key == null) {
+            return other == null;
         }
-        return this.href.equals(other.href);
+        return key.equals(other);
     }
 
     public String toString() {
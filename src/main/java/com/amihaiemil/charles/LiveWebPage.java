@@ -27,22 +27,60 @@ package com.amihaiemil.charles;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.PageFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A web page that is currently being crawled.
  * @author Mihai Andronache (amihaiemil@gmail.com)
  */
 public final class LiveWebPage implements LivePage {
-    
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        LiveWebPage.class
+    );
+
+    /**
+     * Pattern of a page's url, used to find its name.
+     */
+    private static final Pattern NAME = Pattern.compile(
+        "(.+[^\\/])\\/([^\\/].*[^\\/])\\/{0,1}$"
+    );
+
+    /**
+     * Script extracting the url, title, text and links of the page,
+     * in one call.
+     */
+    private static final String SNAPSHOT =
+        "var body = document.body, links = [],"
+        + "  anchors = document.getElementsByTagName('a');"
+        + "for (var i = 0; i < anchors.length; i++) {"
+        + "  var href = anchors[i].href;"
+        + "  if (typeof href === 'string' && href !== '') {"
+        + "    var text = anchors[i].innerText"
+        + "      || anchors[i].textContent || '';"
+        + "    links.push({text: text.trim(), href: href});"
+        + "  }"
+        + "}"
+        + "return {url: document.location.href, title: document.title,"
+        + "  text: body ? (body.innerText || body.textContent || '')"
+        + "  .trim() : '', links: links};";
+
     /**
      * Selenium web driver.
      */
@@ -54,11 +92,17 @@ public final class LiveWebPage implements LivePage {
     }
 
     public String getName() {
-        String url = this.getUrl();
-        Pattern pattern = Pattern.compile(
-            "(.+[^\\/])\\/([^\\/].*[^\\/])\\/{0,1}$"
-        );
-        Matcher matcher = pattern.matcher(url);
+        return LiveWebPage.name(this.getUrl());
+    }
+
+    /**
+     * Name of a page, given its url (the last part of the path or
+     * index for the home page).
+     * @param url Url of the page.
+     * @return Name.
+     */
+    static String name(final String url) {
+        Matcher matcher = NAME.matcher(url);
         if(matcher.find()) {
             return matcher.group(2);
         } else {
@@ -92,8 +136,84 @@ public final class LiveWebPage implements LivePage {
         throw new UnsupportedOperationException("#setTextContent");
     }
 
+    /**
+     * Take a snapshot of the page. If the driver can execute JavaScript,
+     * everything (url, title, text and links) is extracted with one single
+     * script call, instead of one call per element. Otherwise, or if the
+     * script fails, the page is read element by element.
+     * @return Snapshot of this page.
+     */
     public WebPage snapshot() {
-        return new SnapshotWebPage(this);
+        WebPage snapshot = null;
+        if(this.driver instanceof JavascriptExecutor) {
+            try {
+                snapshot = this.extract(
+                    ((JavascriptExecutor) this.driver).executeScript(SNAPSHOT)
+                );
+            } catch (final WebDriverException ex) {
+                LOG.debug(
+                    "Snapshot script failed, reading the page element by "
+                    + "element: " + ex.getMessage()
+                );
+                snapshot = null;
+            }
+        }
+        if(snapshot == null) {
+            snapshot = new SnapshotWebPage(this);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Build the snapshot from the result of the snapshot script.
+     * @param result Result of the script.
+     * @return WebPage or null if the result is not the expected one.
+     */
+    private WebPage extract(final Object result) {
+        if(!(result instanceof Map)) {
+            return null;
+        }
+        final Map<?, ?> values = (Map<?, ?>) result;
+        final Object url = values.get("url");
+        final Object anchors = values.get("links");
+        if(!(url instanceof String) || !(anchors instanceof List)) {
+            return null;
+        }
+        final Set<Link> links = new HashSet<Link>();
+        for(final Object anchor : (List<?>) anchors) {
+            if(anchor instanceof Map) {
+                final Map<?, ?> attributes = (Map<?, ?>) anchor;
+                final Link link = new Link(
+                    LiveWebPage.text(attributes.get("text")),
+                    (String) attributes.get("href")
+                );
+                if(link.valid((String) url)) {
+                    links.add(link);
+                }
+            }
+        }
+        final WebPage page = new SnapshotWebPage();
+        page.setUrl((String) url);
+        page.setName(LiveWebPage.name((String) url));
+        page.setTitle(LiveWebPage.text(values.get("title")));
+        page.setTextContent(LiveWebPage.text(values.get("text")));
+        page.setLinks(links);
+        return page;
+    }
+
+    /**
+     * Text returned by the snapshot script.
+     * @param value Value returned by the script.
+     * @return Text, empty if the value is null.
+     */
+    private static String text(final Object value) {
+        final String text;
+        if(value == null) {
+            text = "";
+        } else {
+            text = String.valueOf(value);
+        }
+        return text;
     }
 
     public Set<Link> getLinks() {
@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Breadth-first frontier kept in memory-mapped files, so the links waiting
+ * to be crawled do not use the heap. Links are appended to fixed-size
+ * segment files; a segment is deleted as soon as all its links were
+ * crawled. Both operations take constant time.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class MappedFrontier implements Frontier {
+
+    /**
+     * Marks the end of the written part of a segment.
+     */
+    private static final int END = -1;
+
+    /**
+     * Encoding of the links.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Directory of the segments.
+     */
+    private final File dir;
+
+    /**
+     * Size of a segment, in bytes.
+     */
+    private final int segmentSize;
+
+    /**
+     * Segment files not yet fully read; the first one is being read,
+     * the last one is being written.
+     */
+    private final Deque<File> segments;
+
+    /**
+     * Segment being written.
+     */
+    private MappedByteBuffer writing;
+
+    /**
+     * Segment being read.
+     */
+    private MappedByteBuffer reading;
+
+    /**
+     * Number of links in the frontier.
+     */
+    private long pending;
+
+    /**
+     * Number of segments created so far.
+     */
+    private long created;
+
+    /**
+     * Depth of the last link returned.
+     */
+    private int last;
+
+    /**
+     * Ctor. Segments have 16MB.
+     * @param dir Directory where the segment files are kept.
+     */
+    public MappedFrontier(final String dir) {
+        this(dir, 16 * 1024 * 1024);
+    }
+
+    /**
+     * Ctor.
+     * @param dir Directory where the segment files are kept.
+     * @param segmentSize Size of a segment file, in bytes.
+     */
+    public MappedFrontier(final String dir, final int segmentSize) {
+        this.dir = new File(dir);
+        this.segmentSize = segmentSize;
+        this.segments = new ArrayDeque<File>();
+        if(!this.dir.exists() && !this.dir.mkdirs()) {
+            throw new IllegalStateException("Could not create dir " + dir);
+        }
+        final File[] stale = this.dir.listFiles();
+        if(stale != null) {
+            for(final File file : stale) {
+                if(file.getName().startsWith("frontier-")) {
+                    MappedFrontier.delete(file);
+                }
+            }
+        }
+        this.writing = this.segment(this.segmentSize);
+    }
+
+    @Override
+    public boolean add(final Link link, final int depth) {
+        final byte[] href = MappedFrontier.bytes(link.getHref());
+        final byte[] text = MappedFrontier.bytes(link.getText());
+        final int size = 12 + href.length + text.length;
+        if(this.writing.remaining() < size) {
+            if(this.writing.remaining() >= 4) {
+                this.writing.putInt(MappedFrontier.END);
+            }
+            this.writing = this.segment(Math.max(this.segmentSize, size));
+        }
+        this.writing.putInt(depth);
+        this.writing.putInt(href.length);
+        this.writing.put(href);
+        this.writing.putInt(text.length);
+        this.writing.put(text);
+        this.pending = this.pending + 1;
+        return true;
+    }
+
+    @Override
+    public Link next() {
+        Link link = null;
+        if(this.pending > 0) {
+            if(this.reading == null) {
+                this.reading = this.map(this.segments.peekFirst());
+            }
+            if(this.reading.remaining() < 4
+                || this.reading.getInt(this.reading.position())
+                    == MappedFrontier.END) {
+                MappedFrontier.delete(this.segments.pollFirst());
+                this.reading = this.map(this.segments.peekFirst());
+            }
+            this.last = this.reading.getInt();
+            final String href = this.string();
+            final String text = this.string();
+            link = new Link(text, href);
+            this.pending = this.pending - 1;
+        }
+        return link;
+    }
+
+    @Override
+    public int depth() {
+        return this.last;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.pending == 0;
+    }
+
+    /**
+     * Read a string from the current segment.
+     * @return String.
+     */
+    private String string() {
+        final byte[] bytes = new byte[this.reading.getInt()];
+        this.reading.get(bytes);
+        return new String(bytes, MappedFrontier.UTF_8);
+    }
+
+    /**
+     * Create a new segment file, to be written.
+     * @param size Size of the segment.
+     * @return Mapped segment.
+     */
+    private MappedByteBuffer segment(final int size) {
+        final File file = new File(
+            this.dir, "frontier-" + this.created + ".seg"
+        );
+        this.created = this.created + 1;
+        this.segments.addLast(file);
+        try {
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(size);
+            } finally {
+                raf.close();
+            }
+        } catch (final IOException ex) {
+            throw new IllegalStateException(
+                "Could not create frontier segment " + file, ex
+            );
+        }
+        return this.map(file);
+    }
+
+    /**
+     * Map a segment file.
+     * @param file Segment file.
+     * @return Mapped segment, positioned at the beginning.
+     */
+    private MappedByteBuffer map(final File file) {
+        try {
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                return raf.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE, 0, raf.length()
+                );
+            } finally {
+                raf.close();
+            }
+        } catch (final IOException ex) {
+            throw new IllegalStateException(
+                "Could not map frontier segment " + file, ex
+            );
+        }
+    }
+
+    /**
+     * UTF-8 bytes of a string.
+     * @param value String, may be null.
+     * @return Bytes.
+     */
+    private static byte[] bytes(final String value) {
+        final byte[] bytes;
+        if(value == null) {
+            bytes = new byte[0];
+        } else {
+            bytes = value.getBytes(MappedFrontier.UTF_8);
+        }
+        return bytes;
+    }
+
+    /**
+     * Delete a segment file which is no longer used.
+     * @param file Segment file.
+     */
+    private static void delete(final File file) {
+        if(file != null && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Visited links kept in a memory-mapped file, as an open-addressing hash
+ * table of {@link Fingerprint}s. Only 8 bytes are stored for each link and
+ * none of them on the heap, so heap usage stays flat regardless of the
+ * size of the website. The table doubles (into a new file) when it is half
+ * full; it can hold up to 2^26 (~67 million) links.<br><br>
+ * Two different links with the same 64 bits fingerprint are considered
+ * equal; the odds of that are negligible for any real website.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class MappedVisitedLinks implements VisitedLinks {
+
+    /**
+     * Bytes per slot.
+     */
+    private static final int SLOT = 8;
+
+    /**
+     * Maximum number of slots, so the table fits in one mapped buffer.
+     */
+    private static final int MAX_SLOTS = 1 << 27;
+
+    /**
+     * Directory of the table files.
+     */
+    private final File dir;
+
+    /**
+     * Canonicalizer of the hrefs.
+     */
+    private final UrlCanonicalizer canonicalizer;
+
+    /**
+     * Initial number of slots.
+     */
+    private final int initial;
+
+    /**
+     * The table.
+     */
+    private MappedByteBuffer table;
+
+    /**
+     * File of the table.
+     */
+    private File file;
+
+    /**
+     * Number of slots in the table (a power of 2).
+     */
+    private int slots;
+
+    /**
+     * Number of links in the table.
+     */
+    private int size;
+
+    /**
+     * Number of table files created so far.
+     */
+    private int files;
+
+    /**
+     * Ctor. Starts with 1M slots (an 8MB file).
+     * @param dir Directory where the table file is kept.
+     */
+    public MappedVisitedLinks(final String dir) {
+        this(dir, 1 << 20);
+    }
+
+    /**
+     * Ctor.
+     * @param dir Directory where the table file is kept.
+     * @param slots Initial number of slots, rounded up to a power of 2.
+     */
+    public MappedVisitedLinks(final String dir, final int slots) {
+        this(dir, slots, new UrlCanonicalizer());
+    }
+
+    /**
+     * Ctor.
+     * @param dir Directory where the table file is kept.
+     * @param slots Initial number of slots, rounded up to a power of 2.
+     * @param canonicalizer Canonicalizer of the hrefs.
+     */
+    public MappedVisitedLinks(
+        final String dir, final int slots,
+        final UrlCanonicalizer canonicalizer
+    ) {
+        this.dir = new File(dir);
+        this.canonicalizer = canonicalizer;
+        int capacity = 2;
+        while(capacity < slots && capacity < MappedVisitedLinks.MAX_SLOTS) {
+            capacity = capacity << 1;
+        }
+        this.initial = capacity;
+        this.clear();
+    }
+
+    @Override
+    public boolean add(final Link link) {
+        if(this.size + 1 > this.slots / 2) {
+            this.grow();
+        }
+        final boolean added = MappedVisitedLinks.insert(
+            this.table, this.slots,
+            MappedVisitedLinks.key(link, this.canonicalizer)
+        );
+        if(added) {
+            this.size = this.size + 1;
+        }
+        return added;
+    }
+
+    @Override
+    public boolean contains(final Link link) {
+        final long key = MappedVisitedLinks.key(link, this.canonicalizer);
+        final int mask = this.slots - 1;
+        int idx = (int) key & mask;
+        boolean found = false;
+        long slot = this.table.getLong(idx * MappedVisitedLinks.SLOT);
+        while(slot != 0) {
+            if(slot == key) {
+                found = true;
+                break;
+            }
+            idx = (idx + 1) & mask;
+            slot = this.table.getLong(idx * MappedVisitedLinks.SLOT);
+        }
+        return found;
+    }
+
+    @Override
+    public void clear() {
+        final File old = this.file;
+        this.slots = this.initial;
+        this.size = 0;
+        this.table = this.map(this.slots);
+        MappedVisitedLinks.delete(old);
+    }
+
+    /**
+     * Double the table, moving the links into a new file.
+     */
+    private void grow() {
+        if(this.slots >= MappedVisitedLinks.MAX_SLOTS) {
+            throw new IllegalStateException(
+                "Too many visited links: " + this.size
+            );
+        }
+        final File old = this.file;
+        final MappedByteBuffer previous = this.table;
+        final int count = this.slots;
+        this.slots = count << 1;
+        this.table = this.map(this.slots);
+        for(int idx = 0; idx < count; ++idx) {
+            final long key = previous.getLong(idx * MappedVisitedLinks.SLOT);
+            if(key != 0) {
+                MappedVisitedLinks.insert(this.table, this.slots, key);
+            }
+        }
+        MappedVisitedLinks.delete(old);
+    }
+
+    /**
+     * Map a new, empty, table file.
+     * @param count Number of slots.
+     * @return Mapped table.
+     */
+    private MappedByteBuffer map(final int count) {
+        try {
+            if(!this.dir.exists() && !this.dir.mkdirs()) {
+                throw new IOException("Could not create dir " + this.dir);
+            }
+            this.file = new File(this.dir, "visited-" + this.files + ".tbl");
+            this.files = this.files + 1;
+            final RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+            try {
+                raf.setLength(0);
+                raf.setLength((long) count * MappedVisitedLinks.SLOT);
+                return raf.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE, 0,
+                    (long) count * MappedVisitedLinks.SLOT
+                );
+            } finally {
+                raf.close();
+            }
+        } catch (final IOException ex) {
+            throw new IllegalStateException(
+                "Could not map visited links file!", ex
+            );
+        }
+    }
+
+    /**
+     * Insert a key into a table.
+     * @param table Table.
+     * @param count Number of slots in the table.
+     * @param key Key, never 0.
+     * @return True if inserted, false if the key was already there.
+     */
+    private static boolean insert(
+        final MappedByteBuffer table, final int count, final long key
+    ) {
+        final int mask = count - 1;
+        int idx = (int) key & mask;
+        long slot = table.getLong(idx * MappedVisitedLinks.SLOT);
+        boolean inserted = true;
+        while(slot != 0) {
+            if(slot == key) {
+                inserted = false;
+                break;
+            }
+            idx = (idx + 1) & mask;
+            slot = table.getLong(idx * MappedVisitedLinks.SLOT);
+        }
+        if(inserted) {
+            table.putLong(idx * MappedVisitedLinks.SLOT, key);
+        }
+        return inserted;
+    }
+
+    /**
+     * Key of a link in the table. 0 marks an empty slot, so it is
+     * never used as a key.
+     * @param link Link.
+     * @param canonicalizer Canonicalizer of the href.
+     * @return Key.
+     */
+    private static long key(
+        final Link link, final UrlCanonicalizer canonicalizer
+    ) {
+        long key = Fingerprint.of(link, canonicalizer);
+        if(key == 0) {
+            key = 1;
+        }
+        return key;
+    }
+
+    /**
+     * Delete a table file which is no longer used.
+     * @param old File or null.
+     */
+    private static void delete(final File old) {
+        if(old != null && !old.delete()) {
+            old.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,482 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Crawl the website as a graph, starting from the index page, using more
+ * WebDrivers (or, in general, {@link Browser}s) at the same time. Each
+ * browser is used by its own worker thread and all the workers share the
+ * same frontier, so every link is crawled only once.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ * @checkstyle ClassDataAbstractionCoupling (300 lines)
+ */
+public final class ParallelGraphCrawl implements WebCrawl {
+
+    /**
+     * Slf4J Logger.
+     */
+    private static final Logger LOG = LoggerFactory
+        .getLogger(ParallelGraphCrawl.class);
+
+    /**
+     * Page to start the crawling from.
+     */
+    private final Link index;
+
+    /**
+     * Browsers to use. One worker is started for each of them.
+     */
+    private final List<Browser> browsers;
+
+    /**
+     * Ignored pages patterns.
+     */
+    private final IgnoredPatterns ignored;
+
+    /**
+     * Repo to export the pages to.
+     */
+    private final Repository repo;
+
+    /**
+     * Size of the export batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Links waiting to be crawled.
+     */
+    private final Frontier frontier;
+
+    /**
+     * Links seen so far.
+     */
+    private final VisitedLinks visited;
+
+    /**
+     * Constructor.
+     * @param idx The index page of the site.
+     * @param drvs WebDrivers to use, one per worker.
+     * @param repo Repository where the crawled pages are exported.
+     */
+    public ParallelGraphCrawl(
+        final String idx, final List<WebDriver> drvs, final Repository repo
+    ) {
+        this(idx, drvs, new IgnoredPatterns(), repo, 20);
+    }
+
+    /**
+     * Constructor.
+     * @param idx The index page of the site.
+     * @param drvs WebDrivers to use, one per worker.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     */
+    public ParallelGraphCrawl(
+        final String idx, final List<WebDriver> drvs,
+        final IgnoredPatterns ignored, final Repository repo
+    ) {
+        this(idx, drvs, ignored, repo, 20);
+    }
+
+    /**
+     * Constructor.
+     * @param idx The index page of the site.
+     * @param drvs WebDrivers to use, one per worker.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batch Size of the export batch.
+     * @checkstyle ParameterNumber (6 lines)
+     */
+    public ParallelGraphCrawl(
+        final String idx, final List<WebDriver> drvs,
+        final IgnoredPatterns ignored, final Repository repo, final int batch
+    ) {
+        this(idx, drvs, ignored, repo, batch, new BreadthFirstFrontier());
+    }
+
+    /**
+     * Constructor.
+     * @param idx The index page of the site.
+     * @param drvs WebDrivers to use, one per worker.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batch Size of the export batch.
+     * @param frontier Frontier deciding the order of the crawl.
+     * @checkstyle ParameterNumber (6 lines)
+     */
+    public ParallelGraphCrawl(
+        final String idx, final List<WebDriver> drvs,
+        final IgnoredPatterns ignored, final Repository repo, final int batch,
+        final Frontier frontier
+    ) {
+        this(
+            idx, drvs, ignored, repo, batch,
+            frontier, new InMemoryVisitedLinks()
+        );
+    }
+
+    /**
+     * Constructor.
+     * @param idx The index page of the site.
+     * @param drvs WebDrivers to use, one per worker.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batch Size of the export batch.
+     * @param frontier Frontier deciding the order of the crawl.
+     * @param visited Links seen during the crawl.
+     * @checkstyle ParameterNumber (6 lines)
+     */
+    public ParallelGraphCrawl(
+        final String idx, final List<WebDriver> drvs,
+        final IgnoredPatterns ignored, final Repository repo, final int batch,
+        final Frontier frontier, final VisitedLinks visited
+    ) {
+        this(
+            idx, ParallelGraphCrawl.browsers(drvs), ignored, repo, batch,
+            frontier, visited
+        );
+    }
+
+    /**
+     * Constructor. A thread-safe browser, such as {@link HttpBrowser}, can
+     * be given more times (e.g. with Collections.nCopies) to have more
+     * workers share it.
+     * @param idx The index page of the site.
+     * @param browsers Browsers to use, one per worker.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batch Size of the export batch.
+     * @param frontier Frontier deciding the order of the crawl.
+     * @param visited Links seen during the crawl.
+     * @checkstyle ParameterNumber (6 lines)
+     */
+    public ParallelGraphCrawl(
+        final String idx, final Collection<? extends Browser> browsers,
+        final IgnoredPatterns ignored, final Repository repo, final int batch,
+        final Frontier frontier, final VisitedLinks visited
+    ) {
+        if(browsers.isEmpty()) {
+            throw new IllegalArgumentException(
+                "At least one Browser is needed!"
+            );
+        }
+        this.index = new Link("index", idx);
+        this.browsers = new ArrayList<Browser>(browsers);
+        this.ignored = ignored;
+        this.repo = repo;
+        this.batchSize = batch;
+        this.frontier = frontier;
+        this.visited = visited;
+    }
+
+    @Override
+    public void crawl() throws DataExportException {
+        if(this.ignored.contains(this.index.getHref())) {
+            return;
+        }
+        final Traversal traversal = new Traversal(this.index);
+        final ExecutorService workers = Executors.newFixedThreadPool(
+            this.browsers.size()
+        );
+        try {
+            final List<Future<Void>> running = new ArrayList<Future<Void>>();
+            for(final Browser browser : this.browsers) {
+                running.add(workers.submit(new Worker(browser, traversal)));
+            }
+            for(final Future<Void> worker : running) {
+                worker.get();
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Crawl was interrupted!", ex);
+        } catch (final ExecutionException ex) {
+            throw new IllegalStateException(
+                "Unexpected error in crawl worker!", ex.getCause()
+            );
+        } finally {
+            workers.shutdownNow();
+        }
+        traversal.rethrow();
+        this.export(traversal.remaining());
+        for(final Browser browser : new LinkedHashSet<Browser>(this.browsers)) {
+            browser.quit();
+        }
+    }
+
+    /**
+     * Wrap the given WebDrivers into Browsers.
+     * @param drivers WebDrivers.
+     * @return Browsers.
+     */
+    private static List<Browser> browsers(final List<WebDriver> drivers) {
+        if(drivers.isEmpty()) {
+            throw new IllegalArgumentException(
+                "At least one WebDriver is needed!"
+            );
+        }
+        final List<Browser> browsers = new ArrayList<Browser>();
+        for(final WebDriver driver : drivers) {
+            browsers.add(new DriverBrowser(driver));
+        }
+        return browsers;
+    }
+
+    /**
+     * Export a batch of pages. Exports are serialized, since Repository
+     * implementations are not required to be thread-safe.
+     * @param pages Pages to export.
+     * @throws DataExportException If something goes wrong.
+     */
+    private void export(final List<WebPage> pages)
+        throws DataExportException {
+        synchronized (this.repo) {
+            this.repo.export(pages);
+        }
+    }
+
+    /**
+     * State of one crawl, shared by all the workers.
+     */
+    private final class Traversal {
+
+        /**
+         * Pages crawled but not yet exported.
+         */
+        private final List<WebPage> batch;
+
+        /**
+         * Number of links currently being crawled.
+         */
+        private int active;
+
+        /**
+         * First failure of any worker.
+         */
+        private Exception failure;
+
+        /**
+         * Ctor.
+         * @param start Index link.
+         */
+        Traversal(final Link start) {
+            this.batch = new ArrayList<WebPage>();
+            while(!this.frontier().isEmpty()) {
+                this.frontier().next();
+            }
+            this.seen().clear();
+            this.seen().add(start);
+            this.frontier().add(start, 0);
+        }
+
+        /**
+         * Take the next link to crawl, waiting while other workers might
+         * still discover new links.
+         * @return Scheduled link or null if the crawl is over.
+         * @throws InterruptedException If interrupted while waiting.
+         */
+        synchronized ScheduledLink take() throws InterruptedException {
+            while(this.failure == null && this.frontier().isEmpty()
+                && this.active > 0) {
+                this.wait();
+            }
+            final ScheduledLink next;
+            if(this.failure != null || this.frontier().isEmpty()) {
+                next = null;
+            } else {
+                final Link link = this.frontier().next();
+                next = new ScheduledLink(link, this.frontier().depth(), 0);
+                this.active = this.active + 1;
+            }
+            return next;
+        }
+
+        /**
+         * A worker finished crawling a page.
+         * @param page Crawled page.
+         * @param depth Depth of the crawled page.
+         * @return Full batch to export, or an empty list.
+         */
+        synchronized List<WebPage> done(final WebPage page, final int depth) {
+            for(final Link link : page.getLinks()) {
+                if(!this.seen().contains(link)) {
+                    if(ParallelGraphCrawl.this.ignored.contains(link.getHref())
+                        || this.frontier().add(link, depth + 1)) {
+                        this.seen().add(link);
+                    }
+                }
+            }
+            this.batch.add(page);
+            final List<WebPage> full;
+            if(this.batch.size() >= ParallelGraphCrawl.this.batchSize) {
+                full = new ArrayList<WebPage>(this.batch);
+                this.batch.clear();
+            } else {
+                full = new ArrayList<WebPage>(0);
+            }
+            this.active = this.active - 1;
+            this.notifyAll();
+            return full;
+        }
+
+        /**
+         * A worker could not load the page it took, so it moves on.
+         */
+        synchronized void skip() {
+            this.active = this.active - 1;
+            this.notifyAll();
+        }
+
+        /**
+         * A worker failed. Every other worker will stop.
+         * @param err Error.
+         */
+        synchronized void fail(final Exception err) {
+            if(this.failure == null) {
+                this.failure = err;
+            }
+            this.notifyAll();
+        }
+
+        /**
+         * The frontier of the crawl.
+         * @return Frontier.
+         */
+        private Frontier frontier() {
+            return ParallelGraphCrawl.this.frontier;
+        }
+
+        /**
+         * Links already crawled or scheduled for crawling.
+         * @return VisitedLinks.
+         */
+        private VisitedLinks seen() {
+            return ParallelGraphCrawl.this.visited;
+        }
+
+        /**
+         * Rethrow the first failure, if any.
+         * @throws DataExportException If a batch could not be exported.
+         */
+        synchronized void rethrow() throws DataExportException {
+            if(this.failure instanceof DataExportException) {
+                throw (DataExportException) this.failure;
+            }
+            if(this.failure instanceof RuntimeException) {
+                throw (RuntimeException) this.failure;
+            }
+        }
+
+        /**
+         * Pages left in the last, incomplete batch.
+         * @return List of pages.
+         */
+        synchronized List<WebPage> remaining() {
+            return new ArrayList<WebPage>(this.batch);
+        }
+    }
+
+    /**
+     * Worker crawling with one Browser.
+     */
+    private final class Worker implements Callable<Void> {
+
+        /**
+         * Browser of this worker.
+         */
+        private final Browser browser;
+
+        /**
+         * Shared traversal.
+         */
+        private final Traversal traversal;
+
+        /**
+         * Ctor.
+         * @param browser Browser of this worker.
+         * @param traversal Shared traversal.
+         */
+        Worker(final Browser browser, final Traversal traversal) {
+            this.browser = browser;
+            this.traversal = traversal;
+        }
+
+        @Override
+        public Void call() throws InterruptedException {
+            ScheduledLink link = this.traversal.take();
+            while(link != null) {
+                try {
+                    final WebPage page = this.browser.snapshot(
+                        link.link().getHref()
+                    );
+                    final List<WebPage> full = this.traversal.done(
+                        page, link.depth()
+                    );
+                    if(!full.isEmpty()) {
+                        ParallelGraphCrawl.this.export(full);
+                    }
+                    link = this.traversal.take();
+                } catch (final IOException ex) {
+                    LOG.warn(
+                        "Could not load " + link.link().getHref()
+                        + ", skipping it", ex
+                    );
+                    this.traversal.skip();
+                    link = this.traversal.take();
+                } catch (final DataExportException ex) {
+                    LOG.error("Could not export crawled pages!", ex);
+                    this.traversal.fail(ex);
+                    link = null;
+                } catch (final RuntimeException ex) {
+                    LOG.error(
+                        "Error while crawling " + link.link().getHref(), ex
+                    );
+                    this.traversal.fail(ex);
+                    link = null;
+                }
+            }
+            return null;
+        }
+    }
+}
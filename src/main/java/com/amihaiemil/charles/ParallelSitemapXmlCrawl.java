@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amihaiemil.charles.sitemap.SitemapXml;
+import com.amihaiemil.charles.sitemap.SitemapXmlLocation;
+import com.amihaiemil.charles.sitemap.Url;
+
+/**
+ * Crawl a website based on the given sitemap xml, using more WebDrivers
+ * (or, in general, {@link Browser}s) at the same time. The urls of the
+ * sitemap (which can be gzipped or a sitemap index) are read before
+ * crawling, split into one shard per browser and every worker crawls
+ * its own shard, exporting its own batches. If a worker fails, the
+ * others stop too.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ * @checkstyle ClassDataAbstractionCoupling (300 lines)
+ */
+public final class ParallelSitemapXmlCrawl implements WebCrawl {
+
+    /**
+     * Slf4J Logger.
+     */
+    private static final Logger LOG = LoggerFactory
+        .getLogger(ParallelSitemapXmlCrawl.class);
+
+    /**
+     * Browsers to use. One worker is started for each of them.
+     */
+    private final List<Browser> browsers;
+
+    /**
+     * URLs to be crawled.
+     */
+    private final Collection<Url> urlset;
+
+    /**
+     * Ignored pages patterns.
+     */
+    private final IgnoredPatterns ignored;
+
+    /**
+     * Repo to export the pages to.
+     */
+    private final Repository repo;
+
+    /**
+     * Size of the export batch, for each worker.
+     */
+    private final int batchSize;
+
+    /**
+     * Constructor.
+     * @param drvs WebDrivers to use, one per worker.
+     * @param sitemapLoc Location of the sitemap.xml file.
+     * @param repo Repository where the crawled pages are exported.
+     * @throws IOException If the sitemap cannot be read.
+     */
+    public ParallelSitemapXmlCrawl(
+        final List<WebDriver> drvs, final SitemapXmlLocation sitemapLoc,
+        final Repository repo
+    ) throws IOException {
+        this(drvs, sitemapLoc, new IgnoredPatterns(), repo, 20);
+    }
+
+    /**
+     * Constructor.
+     * @param drvs WebDrivers to use, one per worker.
+     * @param sitemapLoc Location of the sitemap.xml file.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batch Size of the export batch, for each worker.
+     * @throws IOException If the sitemap cannot be read.
+     * @checkstyle ParameterNumber (6 lines)
+     */
+    public ParallelSitemapXmlCrawl(
+        final List<WebDriver> drvs, final SitemapXmlLocation sitemapLoc,
+        final IgnoredPatterns ignored, final Repository repo, final int batch
+    ) throws IOException {
+        this(
+            ParallelSitemapXmlCrawl.browsers(drvs), sitemapLoc,
+            ignored, repo, batch
+        );
+    }
+
+    /**
+     * Constructor. A thread-safe browser, such as {@link HttpBrowser}, can
+     * be given more times (e.g. with Collections.nCopies) to have more
+     * workers share it.
+     * @param browsers Browsers to use, one per worker.
+     * @param sitemapLoc Location of the sitemap.xml file.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batch Size of the export batch, for each worker.
+     * @throws IOException If the sitemap cannot be read.
+     * @checkstyle ParameterNumber (6 lines)
+     */
+    public ParallelSitemapXmlCrawl(
+        final Collection<? extends Browser> browsers,
+        final SitemapXmlLocation sitemapLoc,
+        final IgnoredPatterns ignored, final Repository repo, final int batch
+    ) throws IOException {
+        if(browsers.isEmpty()) {
+            throw new IllegalArgumentException(
+                "At least one Browser is needed!"
+            );
+        }
+        this.browsers = new ArrayList<Browser>(browsers);
+        this.urlset = new LinkedHashSet<Url>();
+        final Iterator<Url> urls = new SitemapXml(sitemapLoc)
+            .urls();
+        while(urls.hasNext()) {
+            this.urlset.add(urls.next());
+        }
+        this.ignored = ignored;
+        this.repo = repo;
+        this.batchSize = batch;
+    }
+
+    @Override
+    public void crawl() throws DataExportException {
+        final List<List<String>> shards = this.shards();
+        final AtomicReference<Exception> failure =
+            new AtomicReference<Exception>();
+        final ExecutorService workers = Executors.newFixedThreadPool(
+            shards.size()
+        );
+        LOG.info(
+            "Started crawling the sitemap.xml with " + shards.size()
+            + " workers..."
+        );
+        try {
+            final List<Future<Void>> running = new ArrayList<Future<Void>>();
+            for(int idx = 0; idx < shards.size(); ++idx) {
+                running.add(
+                    workers.submit(
+                        new Worker(
+                            idx, this.browsers.get(idx), shards.get(idx),
+                            failure
+                        )
+                    )
+                );
+            }
+            for(final Future<Void> worker : running) {
+                worker.get();
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Crawl was interrupted!", ex);
+        } catch (final ExecutionException ex) {
+            throw new IllegalStateException(
+                "Unexpected error in crawl worker!", ex.getCause()
+            );
+        } finally {
+            workers.shutdownNow();
+        }
+        final Exception err = failure.get();
+        if(err instanceof DataExportException) {
+            throw (DataExportException) err;
+        }
+        if(err instanceof RuntimeException) {
+            throw (RuntimeException) err;
+        }
+        LOG.info("Finished crawling the sitemap.xml!");
+        for(final Browser browser : new LinkedHashSet<Browser>(this.browsers)) {
+            browser.quit();
+        }
+    }
+
+    /**
+     * Split the urls which are not ignored into one shard per browser,
+     * round-robin.
+     * @return Shards of urls.
+     */
+    private List<List<String>> shards() {
+        final List<List<String>> shards = new ArrayList<List<String>>();
+        for(int idx = 0; idx < this.browsers.size(); ++idx) {
+            shards.add(new ArrayList<String>());
+        }
+        int next = 0;
+        for(final Url url : this.urlset) {
+            if(!this.ignored.contains(url.getLoc())) {
+                shards.get(next).add(url.getLoc());
+                next = (next + 1) % shards.size();
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Export the given pages. The repository is used by one worker at
+     * a time.
+     * @param pages Pages to export.
+     * @throws DataExportException If the pages cannot be exported.
+     */
+    private void export(final List<WebPage> pages)
+        throws DataExportException {
+        synchronized (this.repo) {
+            this.repo.export(pages);
+        }
+    }
+
+    /**
+     * Wrap the given WebDrivers into Browsers.
+     * @param drivers WebDrivers.
+     * @return Browsers.
+     */
+    private static List<Browser> browsers(final List<WebDriver> drivers) {
+        final List<Browser> browsers = new ArrayList<Browser>();
+        for(final WebDriver driver : drivers) {
+            browsers.add(new DriverBrowser(driver));
+        }
+        return browsers;
+    }
+
+    /**
+     * Worker crawling one shard of the sitemap.
+     */
+    private final class Worker implements Callable<Void> {
+
+        /**
+         * Number of this worker, for the logs.
+         */
+        private final int number;
+
+        /**
+         * Browser of this worker.
+         */
+        private final Browser browser;
+
+        /**
+         * Urls to crawl.
+         */
+        private final List<String> shard;
+
+        /**
+         * First failure of any worker.
+         */
+        private final AtomicReference<Exception> failure;
+
+        /**
+         * Ctor.
+         * @param number Number of this worker, for the logs.
+         * @param browser Browser of this worker.
+         * @param shard Urls to crawl.
+         * @param failure First failure of any worker.
+         * @checkstyle ParameterNumber (4 lines)
+         */
+        Worker(
+            final int number, final Browser browser, final List<String> shard,
+            final AtomicReference<Exception> failure
+        ) {
+            this.number = number;
+            this.browser = browser;
+            this.shard = shard;
+            this.failure = failure;
+        }
+
+        @Override
+        public Void call() {
+            final List<WebPage> pages = new ArrayList<WebPage>();
+            int crawled = 0;
+            try {
+                for(final String url : this.shard) {
+                    if(this.failure.get() != null) {
+                        return null;
+                    }
+                    try {
+                        pages.add(this.browser.snapshot(url));
+                    } catch (final IOException ex) {
+                        LOG.warn("Could not load " + url + ", skipping it", ex);
+                    }
+                    crawled = crawled + 1;
+                    LOG.info(
+                        "Worker " + this.number + " crawled page " + url
+                        + " (" + crawled + "/" + this.shard.size() + ")"
+                    );
+                    if(pages.size() == ParallelSitemapXmlCrawl.this.batchSize) {
+                        ParallelSitemapXmlCrawl.this.export(pages);
+                        pages.clear();
+                    }
+                }
+                ParallelSitemapXmlCrawl.this.export(pages);
+                LOG.info(
+                    "Worker " + this.number + " finished its "
+                    + this.shard.size() + " pages."
+                );
+            } catch (final DataExportException ex) {
+                LOG.error("Could not export crawled pages!", ex);
+                this.failure.compareAndSet(null, ex);
+            } catch (final RuntimeException ex) {
+                LOG.error("Error in worker " + this.number, ex);
+                this.failure.compareAndSet(null, ex);
+            }
+            return null;
+        }
+    }
+}
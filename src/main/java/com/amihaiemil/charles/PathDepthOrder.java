@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.Comparator;
+
+/**
+ * Orders links by the number of segments in their path, shallow links
+ * first. E.g. http://www.test.com/a.html comes before
+ * http://www.test.com/posts/2016/a.html.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class PathDepthOrder implements Comparator<Link> {
+
+    @Override
+    public int compare(final Link first, final Link second) {
+        final int left = PathDepthOrder.segments(first.getHref());
+        final int right = PathDepthOrder.segments(second.getHref());
+        final int result;
+        if(left < right) {
+            result = -1;
+        } else if(left > right) {
+            result = 1;
+        } else {
+            result = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Count the non-empty segments of the path, without the query
+     * and fragment.
+     * @param href Link's href.
+     * @return Number of segments.
+     */
+    static int segments(final String href) {
+        int count = 0;
+        if(href != null) {
+            int start = href.indexOf("://");
+            if(start == -1) {
+                start = 0;
+            } else {
+                start = href.indexOf('/', start + 3);
+                if(start == -1) {
+                    start = href.length();
+                }
+            }
+            boolean segment = false;
+            for(int idx = start; idx < href.length(); ++idx) {
+                final char chr = href.charAt(idx);
+                if(chr == '?' || chr == '#') {
+                    break;
+                }
+                if(chr == '/') {
+                    segment = false;
+                } else if(!segment) {
+                    segment = true;
+                    count = count + 1;
+                }
+            }
+        }
+        return count;
+    }
+}
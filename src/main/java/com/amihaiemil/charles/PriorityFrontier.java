@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Frontier which crawls the most important links first, according to
+ * a given order. Links of equal importance are crawled in the order in
+ * which they were found. Both operations take logarithmic time.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class PriorityFrontier implements Frontier {
+
+    /**
+     * Heap of links.
+     */
+    private final PriorityQueue<ScheduledLink> links;
+
+    /**
+     * Number of links added so far.
+     */
+    private long added;
+
+    /**
+     * Depth of the last link returned.
+     */
+    private int last;
+
+    /**
+     * Ctor. Links with shorter paths are crawled first.
+     */
+    public PriorityFrontier() {
+        this(new PathDepthOrder());
+    }
+
+    /**
+     * Ctor.
+     * @param order Order of the links, most important first.
+     */
+    public PriorityFrontier(final Comparator<Link> order) {
+        this.links = new PriorityQueue<ScheduledLink>(
+            11,
+            new Comparator<ScheduledLink>() {
+                @Override
+                public int compare(
+                    final ScheduledLink first, final ScheduledLink second
+                ) {
+                    int result = order.compare(first.link(), second.link());
+                    if(result == 0) {
+                        result = Long.valueOf(first.order())
+                            .compareTo(second.order());
+                    }
+                    return result;
+                }
+            }
+        );
+    }
+
+    @Override
+    public boolean add(final Link link, final int depth) {
+        this.links.add(new ScheduledLink(link, depth, this.added));
+        this.added = this.added + 1;
+        return true;
+    }
+
+    @Override
+    public Link next() {
+        final ScheduledLink next = this.links.poll();
+        Link link = null;
+        if(next != null) {
+            this.last = next.depth();
+            link = next.link();
+        }
+        return link;
+    }
+
+    @Override
+    public int depth() {
+        return this.last;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.links.isEmpty();
+    }
+}
@@ -40,4 +40,12 @@ public interface Repository {
      * @throws DataExportException If something goes wrong.
      */
     public void export(List<WebPage> pages) throws DataExportException;
+
+    /**
+     * Wait until all the pages given to {@link #export(List)} are exported.
+     * Repositories which export synchronously have nothing to wait for;
+     * decorators forward the call to the repository they wrap.
+     * @throws DataExportException If some pages could not be exported.
+     */
+    public void flush() throws DataExportException;
 }
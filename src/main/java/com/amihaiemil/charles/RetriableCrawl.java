@@ -30,6 +30,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * WebCrawl, that retries a number of times if any runtime exception occurs in the process.
+ * A {@link GraphCrawl} with a {@link CrawlJournal} is retried from where it failed,
+ * not from the index page.
  * @author Mihai Andronache (amihaiemil@gmail.com)
  * @version $Id$
  * @since 1.0.0
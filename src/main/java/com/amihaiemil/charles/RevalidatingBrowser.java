@@ -0,0 +1,437 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Browser which remembers the ETag and Last-Modified headers of each page
+ * it snapshots and, next time, asks the server (with a conditional
+ * request) whether the page changed, before rendering it with the
+ * original browser. If the server answers 304 Not Modified, the previous
+ * snapshot is returned and the original browser is not used at all.<br><br>
+ * The validators and snapshots are kept in memory or, given a directory,
+ * in that directory (one json file per page), so they survive between
+ * crawls; then only the validators are kept in memory and a snapshot is
+ * read from its file when the server answers 304.
+ * It is thread-safe if the original browser is.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class RevalidatingBrowser implements Browser {
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        RevalidatingBrowser.class
+    );
+
+    /**
+     * Json mapper; thread-safe once configured.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Largest response body (in bytes) which is read and discarded, so
+     * the connection can be reused; bigger bodies abort the connection.
+     */
+    private static final long DRAIN = 64 * 1024;
+
+    /**
+     * Original browser, rendering the pages which changed.
+     */
+    private final Browser origin;
+
+    /**
+     * HTTP client sending the conditional requests.
+     */
+    private final CloseableHttpClient client;
+
+    /**
+     * Directory where the validated snapshots are kept; may be null.
+     */
+    private final File dir;
+
+    /**
+     * Validated snapshots, by url; without the snapshots themselves if
+     * they are kept in the directory.
+     */
+    private final Map<String, Validated> pages;
+
+    /**
+     * Ctor. Keeps the snapshots only in memory.
+     * @param origin Original browser.
+     */
+    public RevalidatingBrowser(final Browser origin) {
+        this(origin, PooledHttpClient.create(20), null);
+    }
+
+    /**
+     * Ctor.
+     * @param origin Original browser.
+     * @param dir Directory where the snapshots are kept between crawls.
+     */
+    public RevalidatingBrowser(final Browser origin, final File dir) {
+        this(origin, PooledHttpClient.create(20), dir);
+    }
+
+    /**
+     * Ctor.
+     * @param origin Original browser.
+     * @param client HTTP client for the conditional requests. It will be
+     *  closed when this browser quits.
+     * @param dir Directory where the snapshots are kept between crawls
+     *  or null, if they should be kept only in memory.
+     */
+    public RevalidatingBrowser(
+        final Browser origin, final CloseableHttpClient client,
+        final File dir
+    ) {
+        this.origin = origin;
+        this.client = client;
+        this.dir = dir;
+        this.pages = new ConcurrentHashMap<String, Validated>();
+    }
+
+    @Override
+    public WebPage snapshot(final String url) throws IOException {
+        final Validated previous = this.previous(url);
+        final HttpRequestBase request;
+        if(previous == null) {
+            request = new HttpHead(url);
+        } else {
+            request = new HttpGet(url);
+            if(previous.etag != null) {
+                request.setHeader("If-None-Match", previous.etag);
+            }
+            if(previous.modified != null) {
+                request.setHeader("If-Modified-Since", previous.modified);
+            }
+        }
+        String etag = null;
+        String modified = null;
+        try {
+            final CloseableHttpResponse response = this.client.execute(
+                request
+            );
+            try {
+                if(previous != null && response.getStatusLine()
+                    .getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                    final WebPage kept = this.kept(url, previous);
+                    if(kept != null) {
+                        LOG.info("Page " + url + " was not modified.");
+                        return kept;
+                    }
+                }
+                etag = RevalidatingBrowser.header(response, "ETag");
+                modified = RevalidatingBrowser.header(
+                    response, "Last-Modified"
+                );
+            } finally {
+                RevalidatingBrowser.release(request, response);
+            }
+        } catch (final IOException ex) {
+            LOG.warn("Could not revalidate " + url + ": " + ex.getMessage());
+        }
+        final WebPage page = this.origin.snapshot(url);
+        if(etag == null && modified == null) {
+            this.forget(url);
+        } else {
+            this.remember(
+                url,
+                new Validated(etag, modified, RevalidatingBrowser.copy(page))
+            );
+        }
+        return page;
+    }
+
+    @Override
+    public void quit() {
+        try {
+            this.client.close();
+        } catch (final IOException ex) {
+            LOG.warn("Could not close the HTTP client", ex);
+        }
+        this.origin.quit();
+    }
+
+    /**
+     * Validators of the previous snapshot, from memory or from the
+     * directory.
+     * @param url Url of the page.
+     * @return Validated snapshot or null if there is none.
+     */
+    private Validated previous(final String url) {
+        Validated previous = this.pages.get(url);
+        if(previous == null && this.dir != null) {
+            final JsonNode json = this.read(url);
+            if(json != null) {
+                previous = new Validated(
+                    RevalidatingBrowser.text(json, "etag"),
+                    RevalidatingBrowser.text(json, "modified"), null
+                );
+                this.pages.put(url, previous);
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Copy of the previous snapshot, from memory or from the directory.
+     * @param url Url of the page.
+     * @param previous Validated snapshot.
+     * @return Web page or null if the snapshot cannot be read anymore.
+     */
+    private WebPage kept(final String url, final Validated previous) {
+        WebPage page = null;
+        if(previous.page != null) {
+            page = RevalidatingBrowser.copy(previous.page);
+        } else {
+            final JsonNode json = this.read(url);
+            if(json != null) {
+                try {
+                    page = RevalidatingBrowser.MAPPER.treeToValue(
+                        json.get("page"), SnapshotWebPage.class
+                    );
+                } catch (final IOException ex) {
+                    LOG.warn("Could not read the snapshot of " + url, ex);
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Remember the snapshot of the page.
+     * @param url Url of the page.
+     * @param validated Validated snapshot.
+     */
+    private void remember(final String url, final Validated validated) {
+        if(this.dir == null) {
+            this.pages.put(url, validated);
+        } else {
+            final ObjectNode json = RevalidatingBrowser.MAPPER
+                .createObjectNode();
+            json.put("etag", validated.etag);
+            json.put("modified", validated.modified);
+            json.set(
+                "page", RevalidatingBrowser.MAPPER.valueToTree(validated.page)
+            );
+            try {
+                RevalidatingBrowser.MAPPER.writeValue(this.file(url), json);
+                this.pages.put(
+                    url,
+                    new Validated(validated.etag, validated.modified, null)
+                );
+            } catch (final IOException ex) {
+                LOG.warn("Could not save the snapshot of " + url, ex);
+                this.forget(url);
+            }
+        }
+    }
+
+    /**
+     * Read the json file of the page's snapshot.
+     * @param url Url of the page.
+     * @return Json or null if there is no (readable) file.
+     */
+    private JsonNode read(final String url) {
+        final File file = this.file(url);
+        JsonNode json = null;
+        if(file.exists()) {
+            try {
+                json = RevalidatingBrowser.MAPPER.readTree(file);
+            } catch (final IOException ex) {
+                LOG.warn("Could not read " + file, ex);
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Forget the snapshot of the page, it cannot be revalidated anymore.
+     * @param url Url of the page.
+     */
+    private void forget(final String url) {
+        this.pages.remove(url);
+        if(this.dir != null) {
+            this.file(url).delete();
+        }
+    }
+
+    /**
+     * File of the page's snapshot.
+     * @param url Url of the page.
+     * @return File in the directory.
+     */
+    private File file(final String url) {
+        return new File(
+            this.dir, Long.toHexString(Fingerprint.of(url)) + ".json"
+        );
+    }
+
+    /**
+     * Release the connection of the response. Its body, if any, is
+     * consumed so the connection goes back to the pool; only a large body
+     * (or one of unknown length), which the original browser will fetch
+     * again anyway, aborts the connection instead.
+     * @param request HTTP request.
+     * @param response HTTP response.
+     * @throws IOException If the connection cannot be released.
+     */
+    private static void release(
+        final HttpRequestBase request, final CloseableHttpResponse response
+    ) throws IOException {
+        try {
+            final HttpEntity entity = response.getEntity();
+            if(entity != null) {
+                final long length = entity.getContentLength();
+                if(length >= 0 && length <= RevalidatingBrowser.DRAIN) {
+                    EntityUtils.consume(entity);
+                } else {
+                    request.abort();
+                }
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Value of a response header.
+     * @param response HTTP response.
+     * @param name Name of the header.
+     * @return Value or null if the header is missing.
+     */
+    private static String header(
+        final CloseableHttpResponse response, final String name
+    ) {
+        final Header header = response.getFirstHeader(name);
+        final String value;
+        if(header == null) {
+            value = null;
+        } else {
+            value = header.getValue();
+        }
+        return value;
+    }
+
+    /**
+     * Text of a json field.
+     * @param json Json object.
+     * @param name Name of the field.
+     * @return Text or null if the field is missing or null.
+     */
+    private static String text(final JsonNode json, final String name) {
+        final JsonNode field = json.get(name);
+        final String text;
+        if(field == null || field.isNull()) {
+            text = null;
+        } else {
+            text = field.asText();
+        }
+        return text;
+    }
+
+    /**
+     * Copy of the page, so the remembered snapshot cannot be changed
+     * by whoever uses the returned one.
+     * @param page Web page.
+     * @return Copy.
+     */
+    private static WebPage copy(final WebPage page) {
+        final WebPage copy = new SnapshotWebPage();
+        copy.setName(page.getName());
+        copy.setUrl(page.getUrl());
+        copy.setTitle(page.getTitle());
+        copy.setTextContent(page.getTextContent());
+        final Set<Link> links = new HashSet<Link>();
+        for(final Link link : page.getLinks()) {
+            links.add(new Link(link.getText(), link.getHref()));
+        }
+        copy.setLinks(links);
+        return copy;
+    }
+
+    /**
+     * Snapshot of a page, with its validators.
+     */
+    private static final class Validated {
+
+        /**
+         * ETag of the page; may be null.
+         */
+        private final String etag;
+
+        /**
+         * Last-Modified date of the page; may be null.
+         */
+        private final String modified;
+
+        /**
+         * Snapshot of the page; null if it is kept only in the directory.
+         */
+        private final WebPage page;
+
+        /**
+         * Ctor.
+         * @param etag ETag of the page.
+         * @param modified Last-Modified date of the page.
+         * @param page Snapshot of the page.
+         */
+        Validated(
+            final String etag, final String modified, final WebPage page
+        ) {
+            this.etag = etag;
+            this.modified = modified;
+            this.page = page;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+/**
+ * A link scheduled for crawling, as kept inside a {@link Frontier}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+final class ScheduledLink {
+
+    /**
+     * The link.
+     */
+    private final Link link;
+
+    /**
+     * Hops from the index page.
+     */
+    private final int depth;
+
+    /**
+     * Order in which the link was scheduled.
+     */
+    private final long order;
+
+    /**
+     * Ctor.
+     * @param link The link.
+     * @param depth Hops from the index page.
+     * @param order Order in which the link was scheduled.
+     */
+    ScheduledLink(final Link link, final int depth, final long order) {
+        this.link = link;
+        this.depth = depth;
+        this.order = order;
+    }
+
+    /**
+     * The link.
+     * @return Link.
+     */
+    Link link() {
+        return this.link;
+    }
+
+    /**
+     * Hops from the index page.
+     * @return Depth.
+     */
+    int depth() {
+        return this.depth;
+    }
+
+    /**
+     * Order in which the link was scheduled.
+     * @return Sequence number.
+     */
+    long order() {
+        return this.order;
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.amihaiemil.charles.sitemap.Url;
+
+/**
+ * Orders links by the priority they have in the sitemap.xml, highest
+ * priority first. Links with the same priority are ordered by
+ * {@link PathDepthOrder}. Links which are not in the sitemap (or have no
+ * valid priority) get the default priority, 0.5.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ * @see <a href="https://www.sitemaps.org/protocol.html">Sitemap protocol</a>
+ */
+public final class SitemapPriorityOrder implements Comparator<Link> {
+
+    /**
+     * Default priority of a page.
+     */
+    private static final double DEFAULT = 0.5;
+
+    /**
+     * Priorities of the links in the sitemap.
+     */
+    private final Map<Link, Double> priorities;
+
+    /**
+     * Tie breaker.
+     */
+    private final Comparator<Link> paths;
+
+    /**
+     * Ctor.
+     * @param urls Urls from the sitemap.xml.
+     */
+    public SitemapPriorityOrder(final Set<Url> urls) {
+        this.priorities = new HashMap<Link, Double>();
+        for(final Url url : urls) {
+            this.priorities.put(
+                new Link("", url.getLoc()),
+                SitemapPriorityOrder.parse(url.getPriority())
+            );
+        }
+        this.paths = new PathDepthOrder();
+    }
+
+    @Override
+    public int compare(final Link first, final Link second) {
+        int result = Double.compare(
+            this.priority(second), this.priority(first)
+        );
+        if(result == 0) {
+            result = this.paths.compare(first, second);
+        }
+        return result;
+    }
+
+    /**
+     * Priority of a link.
+     * @param link Link.
+     * @return Priority, from 0.0 to 1.0.
+     */
+    private double priority(final Link link) {
+        final Double priority = this.priorities.get(link);
+        final double result;
+        if(priority == null) {
+            result = SitemapPriorityOrder.DEFAULT;
+        } else {
+            result = priority;
+        }
+        return result;
+    }
+
+    /**
+     * Parse the priority from sitemap.xml.
+     * @param value Text value.
+     * @return Priority or the default if the value is missing or invalid.
+     */
+    private static double parse(final String value) {
+        double result = SitemapPriorityOrder.DEFAULT;
+        if(value != null && !value.trim().isEmpty()) {
+            try {
+                result = Double.parseDouble(value.trim());
+            } catch (final NumberFormatException ex) {
+                result = SitemapPriorityOrder.DEFAULT;
+            }
+        }
+        return result;
+    }
+}
@@ -25,10 +25,14 @@
  */
 package com.amihaiemil.charles;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
 
 import org.openqa.selenium.WebDriver;
 import org.slf4j.Logger;
@@ -39,7 +43,19 @@ import com.amihaiemil.charles.sitemap.SitemapXmlLocation;
 import com.amihaiemil.charles.sitemap.Url;
 
 /**
- * Crawl a website based on the given sitemap xml.
+ * Crawl a website based on the given sitemap xml. The sitemap is read
+ * while crawling, one url at a time, and duplicate urls are crawled
+ * only once. Gzipped sitemaps and sitemap indexes are supported.<br>
+ * Given a persisted {@link CrawlHistory} (e.g. {@link FileCrawlHistory}),
+ * the crawl is incremental: a page which was crawled before is crawled
+ * again only if its lastmod is after the lastmod it had at the previous
+ * crawl or, if it has no lastmod, if its changefreq window has elapsed
+ * since the previous crawl. Without a history, every page is crawled
+ * each time. The pages are keyed by their canonical url from the
+ * sitemap, so the history must not be shared with a
+ * {@link ChangedPagesRepository}, which keys them by their final url.
+ * Equivalent urls are recognized by a {@link UrlCanonicalizer}, which
+ * can be configured (e.g. to remove tracking parameters).
  * @author Mihai Andronache (amihaiemil@gmail.com)
  */
 public final class SitemapXmlCrawl extends AbstractWebCrawl {
@@ -50,18 +66,33 @@ public final class SitemapXmlCrawl extends AbstractWebCrawl {
     private static final Logger LOG = LoggerFactory.getLogger(SitemapXmlCrawl.class);
 
     /**
-     * URLs to be crawled.
+     * Location of the sitemap.xml, read while crawling.
+     */
+    private final SitemapXmlLocation sitemap;
+
+    /**
+     * When was each page crawled before.
      */
-    private Set<Url> urlset;
+    private final CrawlHistory history;
+
+    /**
+     * Is the crawl incremental, recording every exported page in the
+     * history?
+     */
+    private final boolean incremental;
+
+    /**
+     * Canonicalizer of the urls.
+     */
+    private final UrlCanonicalizer canonicalizer;
 
     /**
      * Start a new sitemap.xml crawl using the specified driver.
      * @param drv Specified driver (e.g. chrome, firefox etc).
      * @param sitemapLoc Location of the sitemap.xml file.
      * @param repo Repository to export the pages to.
-     * @throws IOException If something goes wrong.
      */
-    public SitemapXmlCrawl(WebDriver drv, SitemapXmlLocation sitemapLoc, Repository repo) throws IOException {
+    public SitemapXmlCrawl(WebDriver drv, SitemapXmlLocation sitemapLoc, Repository repo) {
         this(drv, sitemapLoc, new IgnoredPatterns(), repo, 20);
     }
 
@@ -71,9 +102,8 @@ public final class SitemapXmlCrawl extends AbstractWebCrawl {
      * @param sitemapLoc Location of the sitemap.xml file.
      * @param repo Repository to export the pages to.
      * @param batch Size of the batch to export.
-     * @throws IOException If something goes wrong.
      */
-    public SitemapXmlCrawl(WebDriver drv, SitemapXmlLocation sitemapLoc, Repository repo, int batch) throws IOException {
+    public SitemapXmlCrawl(WebDriver drv, SitemapXmlLocation sitemapLoc, Repository repo, int batch) {
         this(drv, sitemapLoc, new IgnoredPatterns(), repo, batch);
     }
 
@@ -83,9 +113,8 @@ public final class SitemapXmlCrawl extends AbstractWebCrawl {
      * @param sitemapLoc Location of the sitemap.xml file.
      * @param ignored Patterns of the ignored pages.
      * @param repo Repository to export the pages to.
-     * @throws IOException If something goes wrong.
      */
-    public SitemapXmlCrawl(WebDriver drv, SitemapXmlLocation sitemapLoc, IgnoredPatterns ignored, Repository repo) throws IOException {
+    public SitemapXmlCrawl(WebDriver drv, SitemapXmlLocation sitemapLoc, IgnoredPatterns ignored, Repository repo) {
         this(drv, sitemapLoc, ignored, repo, 20);
     }
 
@@ -96,40 +125,301 @@ public final class SitemapXmlCrawl extends AbstractWebCrawl {
      * @param ignored Ignored pages patterns.
      * @param repo Repository where the crawled pages are exported.
      * @param batch Size of the batch to export.
-     * @throws IOException If something goes wrong.
      */
     public SitemapXmlCrawl(
         WebDriver drv, SitemapXmlLocation sitemapLoc,
         IgnoredPatterns ignored, Repository repo, int batch
-    ) throws IOException {
+    ) {
+        this(
+            drv, sitemapLoc, ignored, repo, batch, new NoCrawlHistory(),
+            false, new UrlCanonicalizer()
+        );
+    }
+
+    /**
+     * Start a new, incremental, sitemap.xml crawl using the specified driver.
+     * @param drv Specified driver (e.g. chrome, firefox etc).
+     * @param sitemapLoc Location of the sitemap.xml file.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batch Size of the batch to export.
+     * @param history When was each page crawled before; not to be shared
+     *  with a {@link ChangedPagesRepository}.
+     */
+    public SitemapXmlCrawl(
+        WebDriver drv, SitemapXmlLocation sitemapLoc,
+        IgnoredPatterns ignored, Repository repo, int batch,
+        CrawlHistory history
+    ) {
+        this(
+            drv, sitemapLoc, ignored, repo, batch, history,
+            new UrlCanonicalizer()
+        );
+    }
+
+    /**
+     * Start a new, incremental, sitemap.xml crawl using the specified driver.
+     * @param drv Specified driver (e.g. chrome, firefox etc).
+     * @param sitemapLoc Location of the sitemap.xml file.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batch Size of the batch to export.
+     * @param history When was each page crawled before; not to be shared
+     *  with a {@link ChangedPagesRepository}.
+     * @param canonicalizer Canonicalizer of the urls, to recognize the
+     *  same page under different urls.
+     * @checkstyle ParameterNumber (5 lines)
+     */
+    public SitemapXmlCrawl(
+        final WebDriver drv, final SitemapXmlLocation sitemapLoc,
+        final IgnoredPatterns ignored, final Repository repo, final int batch,
+        final CrawlHistory history, final UrlCanonicalizer canonicalizer
+    ) {
+        this(
+            drv, sitemapLoc, ignored, repo, batch, history, true,
+            canonicalizer
+        );
+    }
+
+    /**
+     * Start a new sitemap.xml crawl using the specified driver.
+     * @param drv Specified driver (e.g. chrome, firefox etc).
+     * @param sitemapLoc Location of the sitemap.xml file.
+     * @param ignored Ignored pages patterns.
+     * @param repo Repository where the crawled pages are exported.
+     * @param batch Size of the batch to export.
+     * @param history When was each page crawled before.
+     * @param incremental Record the exported pages in the history?
+     * @param canonicalizer Canonicalizer of the urls.
+     * @checkstyle ParameterNumber (6 lines)
+     */
+    private SitemapXmlCrawl(
+        final WebDriver drv, final SitemapXmlLocation sitemapLoc,
+        final IgnoredPatterns ignored, final Repository repo, final int batch,
+        final CrawlHistory history, final boolean incremental,
+        final UrlCanonicalizer canonicalizer
+    ) {
         super(drv, ignored, repo, batch);
-        this.urlset = new SitemapXml(sitemapLoc.getStream()).read().getUrls();
+        this.sitemap = sitemapLoc;
+        this.history = history;
+        this.incremental = incremental;
+        this.canonicalizer = canonicalizer;
     }
 
     @Override
     public void crawl() throws DataExportException {
         List<WebPage> pages = new ArrayList<WebPage>();
+        final List<String> keys = new ArrayList<String>();
+        final List<Long> times = new ArrayList<Long>();
+        final List<Long> lastmods = new ArrayList<Long>();
+        final DatatypeFactory dates = SitemapXmlCrawl.dates();
         LOG.info("Started crawling the sitemap.xml...");
-        for(Url url : this.urlset) {
-            if(this.ignoredPatterns().contains(url.getLoc())) {
-                continue;
-            }
-            LOG.info("Crawling page " + url.getLoc() + "... ");
-            this.driver().get(url.getLoc());
-            pages.add(new LiveWebPage(this.driver()).snapshot());
-            LOG.info("Done crawling page " + url.getLoc() + "!");
-            if(pages.size() == this.batchSize()) {
-                try {
-                    this.repo().export(pages);
-                    pages.clear();
-                } catch (DataExportException e) {
-                    e.printStackTrace();
+        final Iterator<Url> urls = this.urls();
+        try {
+            final VisitedLinks crawled = new FingerprintVisitedLinks(
+                this.canonicalizer
+            );
+            while(urls.hasNext()) {
+                final Url url = urls.next();
+                final Link link = new Link("", url.getLoc());
+                if(crawled.contains(link)
+                    || this.ignoredPatterns().contains(url.getLoc())) {
+                    continue;
+                }
+                crawled.add(link);
+                final long now = System.currentTimeMillis();
+                final long modified = SitemapXmlCrawl.lastmod(url, dates);
+                final String key = link.canonical(this.canonicalizer);
+                if(!this.stale(url, key, now, modified)) {
+                    LOG.info("Page " + url.getLoc() + " did not change.");
+                    continue;
+                }
+                LOG.info("Crawling page " + url.getLoc() + "... ");
+                this.driver().get(url.getLoc());
+                pages.add(new LiveWebPage(this.driver()).snapshot());
+                keys.add(key);
+                times.add(now);
+                lastmods.add(modified);
+                LOG.info("Done crawling page " + url.getLoc() + "!");
+                if(pages.size() == this.batchSize()) {
+                    try {
+                        this.export(pages, keys, times, lastmods);
+                    } catch (DataExportException e) {
+                        e.printStackTrace();
+                    }
                 }
             }
+        } finally {
+            SitemapXmlCrawl.close(urls);
         }
         LOG.info("Finished crawling the sitemap.xml!");
-        this.repo().export(pages);
+        this.export(pages, keys, times, lastmods);
         this.driver().quit();
     }
-    
+
+    /**
+     * Export the pages and, if the crawl is incremental, record them in
+     * the crawl history only after they are exported: the repository is
+     * flushed first, since it may only have queued them (e.g. an
+     * {@link AsyncRepository}).
+     * @param pages Crawled pages.
+     * @param keys Canonical urls of the pages, as found in the sitemap.
+     * @param times When was each page crawled.
+     * @param lastmods Lastmod of each page, -1 if unknown.
+     * @throws DataExportException If the pages cannot be exported or
+     *  the history cannot be saved.
+     */
+    private void export(
+        final List<WebPage> pages, final List<String> keys,
+        final List<Long> times, final List<Long> lastmods
+    ) throws DataExportException {
+        this.repo().export(pages);
+        if(this.incremental) {
+            this.repo().flush();
+        }
+        try {
+            if(this.incremental) {
+                for(int idx = 0; idx < pages.size(); ++idx) {
+                    this.history.record(
+                        keys.get(idx), times.get(idx),
+                        ContentHash.of(pages.get(idx)), lastmods.get(idx)
+                    );
+                }
+                this.history.save();
+            }
+        } catch (final IOException ex) {
+            throw new DataExportException(
+                "Could not save the crawl history: " + ex.getMessage()
+            );
+        } finally {
+            pages.clear();
+            keys.clear();
+            times.clear();
+            lastmods.clear();
+        }
+    }
+
+    /**
+     * Should the page be crawled (again)? Its lastmod is compared with the
+     * lastmod it had at the previous crawl or, if that is not known, with
+     * the time of the previous crawl. A missing changefreq means the page
+     * always changes.
+     * @param url Url from the sitemap.
+     * @param key Canonical url of the page.
+     * @param now Current time.
+     * @param modified Lastmod of the url, -1 if missing or invalid.
+     * @return True if the page was never crawled or it may have changed.
+     */
+    private boolean stale(
+        final Url url, final String key, final long now, final long modified
+    ) {
+        final long last = this.history.crawled(key);
+        final boolean stale;
+        if(last < 0) {
+            stale = true;
+        } else {
+            if(modified >= 0) {
+                final long previous = this.history.lastmod(key);
+                if(previous >= 0) {
+                    stale = modified > previous;
+                } else {
+                    stale = modified > last;
+                }
+            } else {
+                stale = now - last >= SitemapXmlCrawl.window(
+                    url.getChangefreq()
+                );
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Lastmod of the url (W3C datetime, e.g. 2017-05-01 or
+     * 2017-05-01T10:00:00+02:00).
+     * @param url Url from the sitemap.
+     * @param dates Parser of the dates.
+     * @return Time in milliseconds, or -1 if it is missing or invalid.
+     */
+    private static long lastmod(final Url url, final DatatypeFactory dates) {
+        final String lastmod = url.getLastmod();
+        long time = -1;
+        if(dates != null && lastmod != null && !lastmod.trim().isEmpty()) {
+            try {
+                time = dates.newXMLGregorianCalendar(lastmod.trim())
+                    .toGregorianCalendar().getTimeInMillis();
+            } catch (final IllegalArgumentException ex) {
+                LOG.warn("Invalid lastmod " + lastmod + " of " + url.getLoc());
+            }
+        }
+        return time;
+    }
+
+    /**
+     * How long does a page not change, according to its changefreq?
+     * @param changefreq Changefreq from the sitemap.
+     * @return Milliseconds.
+     */
+    private static long window(final String changefreq) {
+        final long hour = 60L * 60 * 1000;
+        final long window;
+        if(changefreq == null) {
+            window = 0;
+        } else if("hourly".equalsIgnoreCase(changefreq.trim())) {
+            window = hour;
+        } else if("daily".equalsIgnoreCase(changefreq.trim())) {
+            window = 24 * hour;
+        } else if("weekly".equalsIgnoreCase(changefreq.trim())) {
+            window = 7 * 24 * hour;
+        } else if("monthly".equalsIgnoreCase(changefreq.trim())) {
+            window = 30 * 24 * hour;
+        } else if("yearly".equalsIgnoreCase(changefreq.trim())) {
+            window = 365 * 24 * hour;
+        } else if("never".equalsIgnoreCase(changefreq.trim())) {
+            window = Long.MAX_VALUE;
+        } else {
+            window = 0;
+        }
+        return window;
+    }
+
+    /**
+     * Parser of the lastmod dates.
+     * @return DatatypeFactory or null if none is available.
+     */
+    private static DatatypeFactory dates() {
+        try {
+            return DatatypeFactory.newInstance();
+        } catch (final DatatypeConfigurationException ex) {
+            LOG.warn("Lastmod dates cannot be parsed", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stop reading the sitemap, if it was not fully read.
+     * @param urls Iterator over the urls of the sitemap.
+     */
+    private static void close(final Iterator<Url> urls) {
+        if(urls instanceof Closeable) {
+            try {
+                ((Closeable) urls).close();
+            } catch (final IOException ex) {
+                LOG.warn("Could not close the sitemap.xml", ex);
+            }
+        }
+    }
+
+    /**
+     * Urls of the sitemap, read one by one while they are crawled, so the
+     * crawl starts before the whole sitemap is parsed.
+     * @return Iterator over the urls.
+     */
+    private Iterator<Url> urls() {
+        try {
+            return new SitemapXml(this.sitemap).urls();
+        } catch (final IOException ex) {
+            throw new IllegalStateException("Could not read sitemap.xml", ex);
+        }
+    }
 }
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the first occurrence of many substrings in a text, in a single
+ * pass over the text (Aho-Corasick automaton). Immutable and thread-safe
+ * once built.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+final class SubstringIndex {
+
+    /**
+     * Root of the automaton.
+     */
+    private final Node root;
+
+    /**
+     * Lengths of the substrings, by id.
+     */
+    private final int[] lengths;
+
+    /**
+     * Ctor.
+     * @param substrings Non-empty substrings to look for. The id of each
+     *  one is its index in this list.
+     */
+    SubstringIndex(final List<String> substrings) {
+        this.root = new Node();
+        this.lengths = new int[substrings.size()];
+        for(int id = 0; id < substrings.size(); ++id) {
+            final String substring = substrings.get(id);
+            this.lengths[id] = substring.length();
+            Node node = this.root;
+            for(int idx = 0; idx < substring.length(); ++idx) {
+                final Character chr = substring.charAt(idx);
+                Node child = node.next.get(chr);
+                if(child == null) {
+                    child = new Node();
+                    node.next.put(chr, child);
+                }
+                node = child;
+            }
+            node.found.add(id);
+        }
+        this.link();
+    }
+
+    /**
+     * Index of the first occurrence of each substring in the given text.
+     * @param text Text.
+     * @return Indexes, by substring id; -1 for the ones which do not occur.
+     */
+    int[] firstOccurrences(final String text) {
+        final int[] first = new int[this.lengths.length];
+        Arrays.fill(first, -1);
+        Node node = this.root;
+        for(int idx = 0; idx < text.length(); ++idx) {
+            final Character chr = text.charAt(idx);
+            Node next = node.next.get(chr);
+            while(next == null && node != this.root) {
+                node = node.fail;
+                next = node.next.get(chr);
+            }
+            if(next != null) {
+                node = next;
+            }
+            for(final int id : node.ids) {
+                if(first[id] == -1) {
+                    first[id] = idx - this.lengths[id] + 1;
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Build the failure links (breadth first) and merge the outputs of
+     * each node with the ones of its failure node.
+     */
+    private void link() {
+        final LinkedList<Node> queue = new LinkedList<Node>();
+        this.root.fail = this.root;
+        for(final Node child : this.root.next.values()) {
+            child.fail = this.root;
+            queue.add(child);
+        }
+        this.root.seal();
+        while(!queue.isEmpty()) {
+            final Node node = queue.removeFirst();
+            for(final Map.Entry<Character, Node> edge : node.next.entrySet()) {
+                final Node child = edge.getValue();
+                Node fail = node.fail;
+                while(fail != this.root
+                    && !fail.next.containsKey(edge.getKey())) {
+                    fail = fail.fail;
+                }
+                final Node target = fail.next.get(edge.getKey());
+                if(target == null || target == child) {
+                    child.fail = this.root;
+                } else {
+                    child.fail = target;
+                }
+                queue.add(child);
+            }
+            node.found.addAll(node.fail.found);
+            node.seal();
+        }
+    }
+
+    /**
+     * State of the automaton.
+     */
+    private static final class Node {
+
+        /**
+         * Transitions.
+         */
+        private final Map<Character, Node> next =
+            new HashMap<Character, Node>();
+
+        /**
+         * Ids of the substrings ending in this state, while building.
+         */
+        private final List<Integer> found = new ArrayList<Integer>();
+
+        /**
+         * Ids of the substrings ending in this state.
+         */
+        private int[] ids = new int[0];
+
+        /**
+         * Failure link.
+         */
+        private Node fail;
+
+        /**
+         * Copy the found ids into the array used while matching.
+         */
+        void seal() {
+            this.ids = new int[this.found.size()];
+            for(int idx = 0; idx < this.ids.length; ++idx) {
+                this.ids[idx] = this.found.get(idx);
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns urls into their canonical form, so that equivalent urls can be
+ * recognized by a simple String comparison. The canonical form:
+ * <ul>
+ *   <li>has no #fragment and no trailing slash in the path;</li>
+ *   <li>has the scheme and host in lowercase;</li>
+ *   <li>has no default port (80 for http, 443 for https);</li>
+ *   <li>has percent-encoded unreserved characters decoded
+ *   (e.g. %7E becomes ~) and all the other escapes in uppercase;</li>
+ *   <li>optionally, has the query parameters sorted and/or some of them
+ *   removed (e.g. utm_* tracking parameters).</li>
+ * </ul>
+ * Hrefs without a scheme (e.g. www.test.com/page) are only cleaned of
+ * their fragment, trailing slash and escapes.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class UrlCanonicalizer {
+
+    /**
+     * Sort the query parameters?
+     */
+    private final boolean sortQuery;
+
+    /**
+     * Names of the query parameters to remove. A name ending with *
+     * is a prefix.
+     */
+    private final List<String> stripped;
+
+    /**
+     * Ctor. Query parameters are left untouched.
+     */
+    public UrlCanonicalizer() {
+        this(false, new ArrayList<String>(0));
+    }
+
+    /**
+     * Ctor.
+     * @param sortQuery Should the query parameters be sorted?
+     * @param stripped Names of the query parameters to remove. A name
+     *  ending with * is treated as a prefix (e.g. utm_*).
+     */
+    public UrlCanonicalizer(
+        final boolean sortQuery, final List<String> stripped
+    ) {
+        this.sortQuery = sortQuery;
+        this.stripped = new ArrayList<String>(stripped);
+    }
+
+    /**
+     * Two canonicalizers are equal if they give the same canonical forms,
+     * that is if they have the same settings.
+     * @param obj Other object.
+     * @return True or false.
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        final boolean equal;
+        if(this == obj) {
+            equal = true;
+        } else if(obj == null || this.getClass() != obj.getClass()) {
+            equal = false;
+        } else {
+            final UrlCanonicalizer other = (UrlCanonicalizer) obj;
+            equal = this.sortQuery == other.sortQuery
+                && this.stripped.equals(other.stripped);
+        }
+        return equal;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.stripped.hashCode()
+            + Boolean.valueOf(this.sortQuery).hashCode();
+    }
+
+    /**
+     * Canonical form of the given url.
+     * @param url Url.
+     * @return Canonical url or null if the url is null.
+     */
+    public String canonical(final String url) {
+        String result = null;
+        if(url != null) {
+            int end = url.indexOf('#');
+            if(end == -1) {
+                end = url.length();
+            }
+            final StringBuilder out = new StringBuilder(end);
+            int pos = 0;
+            final int colon = UrlCanonicalizer.schemeEnd(url, end);
+            if(colon > 0) {
+                final String scheme = url.substring(0, colon)
+                    .toLowerCase(Locale.ENGLISH);
+                out.append(scheme).append("://");
+                pos = colon + 3;
+                int authority = pos;
+                while(authority < end && url.charAt(authority) != '/'
+                    && url.charAt(authority) != '?') {
+                    authority = authority + 1;
+                }
+                UrlCanonicalizer.authority(
+                    url.substring(pos, authority), scheme, out
+                );
+                pos = authority;
+            }
+            int query = url.indexOf('?', pos);
+            if(query == -1 || query > end) {
+                query = end;
+            }
+            final int path = out.length();
+            UrlCanonicalizer.escapes(url, pos, query, out);
+            if(out.length() > path && out.charAt(out.length() - 1) == '/') {
+                out.setLength(out.length() - 1);
+            }
+            if(query < end) {
+                final String params = this.query(
+                    url.substring(query + 1, end)
+                );
+                if(!params.isEmpty()) {
+                    out.append('?').append(params);
+                }
+            }
+            result = out.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Canonical query string.
+     * @param query Query, without the leading ?.
+     * @return Canonical query, maybe empty.
+     */
+    private String query(final String query) {
+        final List<String> params = new ArrayList<String>();
+        for(final String param : query.split("&")) {
+            if(!param.isEmpty() && !this.strip(param)) {
+                final StringBuilder escaped = new StringBuilder();
+                UrlCanonicalizer.escapes(param, 0, param.length(), escaped);
+                params.add(escaped.toString());
+            }
+        }
+        if(this.sortQuery) {
+            Collections.sort(params);
+        }
+        final StringBuilder out = new StringBuilder();
+        for(final String param : params) {
+            if(out.length() > 0) {
+                out.append('&');
+            }
+            out.append(param);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Should the query parameter be removed?
+     * @param param Parameter (name=value).
+     * @return True if it should be removed.
+     */
+    private boolean strip(final String param) {
+        final int equals = param.indexOf('=');
+        final String name;
+        if(equals == -1) {
+            name = param;
+        } else {
+            name = param.substring(0, equals);
+        }
+        boolean strip = false;
+        for(final String pattern : this.stripped) {
+            if(pattern.endsWith("*")) {
+                strip = name.startsWith(
+                    pattern.substring(0, pattern.length() - 1)
+                );
+            } else {
+                strip = name.equals(pattern);
+            }
+            if(strip) {
+                break;
+            }
+        }
+        return strip;
+    }
+
+    /**
+     * Index of the colon ending the scheme, if the url starts with
+     * scheme://
+     * @param url Url.
+     * @param end End of the url, without the fragment.
+     * @return Index or -1 if the url has no scheme.
+     */
+    private static int schemeEnd(final String url, final int end) {
+        int colon = -1;
+        for(int idx = 0; idx < end; ++idx) {
+            final char chr = url.charAt(idx);
+            if(chr == ':') {
+                if(idx > 0 && url.startsWith("//", idx + 1)) {
+                    colon = idx;
+                }
+                break;
+            }
+            final boolean valid = Character.isLetter(chr)
+                || idx > 0 && (Character.isDigit(chr)
+                    || chr == '+' || chr == '-' || chr == '.');
+            if(!valid || chr > 127) {
+                break;
+            }
+        }
+        return colon;
+    }
+
+    /**
+     * Append the canonical authority (user info, host, port).
+     * @param authority Authority.
+     * @param scheme Scheme, lowercase.
+     * @param out Output.
+     */
+    private static void authority(
+        final String authority, final String scheme, final StringBuilder out
+    ) {
+        final int userinfo = authority.lastIndexOf('@');
+        out.append(authority, 0, userinfo + 1);
+        final String hostport = authority.substring(userinfo + 1);
+        int colon = hostport.lastIndexOf(':');
+        if(colon != -1 && hostport.indexOf(']', colon) != -1) {
+            colon = -1;
+        }
+        if(colon == -1) {
+            out.append(hostport.toLowerCase(Locale.ENGLISH));
+        } else {
+            out.append(
+                hostport.substring(0, colon).toLowerCase(Locale.ENGLISH)
+            );
+            final String port = hostport.substring(colon + 1);
+            final boolean implicit = port.isEmpty()
+                || "http".equals(scheme) && "80".equals(port)
+                || "https".equals(scheme) && "443".equals(port);
+            if(!implicit) {
+                out.append(':').append(port);
+            }
+        }
+    }
+
+    /**
+     * Append the characters from the given range, normalizing the
+     * percent-encoded ones.
+     * @param url Url.
+     * @param start Start of the range.
+     * @param end End of the range.
+     * @param out Output.
+     */
+    private static void escapes(
+        final String url, final int start, final int end,
+        final StringBuilder out
+    ) {
+        int idx = start;
+        while(idx < end) {
+            final char chr = url.charAt(idx);
+            int high = -1;
+            int low = -1;
+            if(chr == '%' && idx + 2 < end) {
+                high = Character.digit(url.charAt(idx + 1), 16);
+                low = Character.digit(url.charAt(idx + 2), 16);
+            }
+            if(high == -1 || low == -1) {
+                out.append(chr);
+                idx = idx + 1;
+            } else {
+                final char decoded = (char) (high * 16 + low);
+                if(UrlCanonicalizer.unreserved(decoded)) {
+                    out.append(decoded);
+                } else {
+                    out.append('%')
+                        .append(Character.toUpperCase(url.charAt(idx + 1)))
+                        .append(Character.toUpperCase(url.charAt(idx + 2)));
+                }
+                idx = idx + 3;
+            }
+        }
+    }
+
+    /**
+     * Is the character unreserved (RFC 3986)?
+     * @param chr Character.
+     * @return True if it never needs to be percent-encoded.
+     */
+    private static boolean unreserved(final char chr) {
+        return chr >= 'a' && chr <= 'z' || chr >= 'A' && chr <= 'Z'
+            || chr >= '0' && chr <= '9'
+            || chr == '-' || chr == '.' || chr == '_' || chr == '~';
+    }
+}
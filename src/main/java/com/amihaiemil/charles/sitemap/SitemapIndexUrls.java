@@ -0,0 +1,375 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.sitemap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Urls of all the child sitemaps of a sitemap index, merged into one
+ * stream. The children are fetched and parsed concurrently, each of them
+ * being streamed (and decompressed, if gzipped) into a bounded queue,
+ * which this iterator drains. Duplicates across children are not removed
+ * here; the crawl does it.<br><br>
+ * The child locations are resolved against the index's location. An
+ * index read from the web may only point to http(s) children; on-disk
+ * children are allowed only if the index itself was read from the disk.
+ * Other children, and children already read from the same index tree,
+ * are skipped. A child which cannot be read (e.g. it is missing or it is
+ * not valid xml) is logged and skipped too, so the other children are
+ * still crawled.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+final class SitemapIndexUrls implements Iterator<Url>, Closeable {
+
+    /**
+     * Marker of a finished child sitemap.
+     */
+    private static final Url DONE = new Url();
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        SitemapIndexUrls.class
+    );
+
+    /**
+     * Urls read from the children and not yet returned.
+     */
+    private final BlockingQueue<Url> queue;
+
+    /**
+     * Threads fetching the children.
+     */
+    private final ExecutorService fetchers;
+
+    /**
+     * Number of child sitemaps.
+     */
+    private final int children;
+
+    /**
+     * Number of child sitemaps fully read.
+     */
+    private int finished;
+
+    /**
+     * Next url; null if not read yet or if there are no more urls.
+     */
+    private Url next;
+
+    /**
+     * Was this iterator closed?
+     */
+    private volatile boolean closed;
+
+    /**
+     * Ctor.
+     * @param index Sitemap index, giving the locations of the children.
+     * @param threads How many children are fetched at the same time.
+     * @param parent Location of the index (url or path on disk);
+     *  null if unknown.
+     * @param depth How many levels of indexes the children may still
+     *  follow.
+     * @param seen Locations already read from the same index tree.
+     * @checkstyle ParameterNumber (5 lines)
+     */
+    SitemapIndexUrls(
+        final StreamedUrls index, final int threads, final String parent,
+        final int depth, final Set<String> seen
+    ) {
+        final List<String> locations = new ArrayList<String>();
+        while(index.hasNext()) {
+            final String loc = index.next().getLoc();
+            final String child = SitemapIndexUrls.resolve(parent, loc);
+            if(child == null) {
+                LOG.warn(
+                    "Child sitemap " + loc + " of " + parent
+                    + " is not allowed, it is ignored."
+                );
+            } else if(seen.add(child)) {
+                locations.add(child);
+            }
+        }
+        this.children = locations.size();
+        this.queue = new ArrayBlockingQueue<Url>(1024);
+        this.fetchers = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(threads, locations.size())),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable task) {
+                    final Thread thread = new Thread(task, "charles-sitemap");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }
+        );
+        for(final String location : locations) {
+            this.fetchers.submit(
+                new Child(location, threads, depth, seen)
+            );
+        }
+        this.fetchers.shutdown();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while(this.next == null && this.finished < this.children) {
+            final Url url;
+            try {
+                url = this.queue.take();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                this.close();
+                throw new IllegalStateException(
+                    "Interrupted while reading the sitemap index", ex
+                );
+            }
+            if(url == SitemapIndexUrls.DONE) {
+                this.finished = this.finished + 1;
+            } else {
+                this.next = url;
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Url next() {
+        if(!this.hasNext()) {
+            throw new NoSuchElementException("No more urls in sitemap index");
+        }
+        final Url url = this.next;
+        this.next = null;
+        return url;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("#remove");
+    }
+
+    /**
+     * Stop fetching the children.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.finished = this.children;
+        this.fetchers.shutdownNow();
+    }
+
+    /**
+     * Location of a child sitemap: online if it is an http(s) url,
+     * on disk otherwise. The location must be resolved already
+     * (see {@link #resolve(String, String)}).
+     * @param location Resolved location.
+     * @return SitemapXmlLocation.
+     */
+    static SitemapXmlLocation location(final String location) {
+        final SitemapXmlLocation child;
+        if(SitemapIndexUrls.online(location)) {
+            child = new SitemapXmlOnline(location);
+        } else {
+            child = new SitemapXmlOnDisk(location);
+        }
+        return child;
+    }
+
+    /**
+     * Resolve the location of a child sitemap against its index.
+     * @param parent Location of the index (url or path on disk);
+     *  null if unknown.
+     * @param loc Location of the child, as given in the index.
+     * @return Absolute url or path of the child, or null if it is not
+     *  allowed.
+     */
+    static String resolve(final String parent, final String loc) {
+        final String trimmed = loc.trim();
+        String child = null;
+        if(parent == null) {
+            if(SitemapIndexUrls.online(trimmed)) {
+                child = trimmed;
+            }
+        } else if(SitemapIndexUrls.online(parent)) {
+            try {
+                final String resolved = URI.create(parent).resolve(trimmed)
+                    .toString();
+                if(SitemapIndexUrls.online(resolved)) {
+                    child = resolved;
+                }
+            } catch (final IllegalArgumentException ex) {
+                child = null;
+            }
+        } else if(SitemapIndexUrls.online(trimmed)) {
+            child = trimmed;
+        } else if(!trimmed.isEmpty()) {
+            File file = new File(trimmed);
+            if(!file.isAbsolute()) {
+                file = new File(
+                    new File(parent).getAbsoluteFile().getParentFile(),
+                    trimmed
+                );
+            }
+            child = file.getAbsolutePath();
+        }
+        return child;
+    }
+
+    /**
+     * Is this an http(s) url?
+     * @param location Location.
+     * @return True or false.
+     */
+    private static boolean online(final String location) {
+        final String lower = location.toLowerCase(Locale.ENGLISH);
+        return lower.startsWith("http://") || lower.startsWith("https://");
+    }
+
+    /**
+     * Task reading one child sitemap into the queue.
+     */
+    private final class Child implements Runnable {
+
+        /**
+         * Location of the child sitemap.
+         */
+        private final String location;
+
+        /**
+         * Threads for the children of the child, if it is an index too.
+         */
+        private final int threads;
+
+        /**
+         * How many levels of indexes the child may still follow.
+         */
+        private final int depth;
+
+        /**
+         * Locations already read from the same index tree.
+         */
+        private final Set<String> seen;
+
+        /**
+         * Ctor.
+         * @param location Resolved location of the child sitemap.
+         * @param threads Threads for the children of the child.
+         * @param depth Levels of indexes the child may still follow.
+         * @param seen Locations already read from the same index tree.
+         */
+        Child(
+            final String location, final int threads, final int depth,
+            final Set<String> seen
+        ) {
+            this.location = location;
+            this.threads = threads;
+            this.depth = depth;
+            this.seen = seen;
+        }
+
+        @Override
+        public void run() {
+            final SitemapIndexUrls parent = SitemapIndexUrls.this;
+            Iterator<Url> urls = null;
+            try {
+                urls = new SitemapXml(
+                    SitemapIndexUrls.location(this.location).getStream(),
+                    this.threads, this.location, this.depth, this.seen
+                ).urls();
+                while(!parent.closed && urls.hasNext()) {
+                    this.put(urls.next());
+                }
+            } catch (final IOException ex) {
+                this.skipped(ex);
+            } catch (final RuntimeException ex) {
+                this.skipped(ex);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if(urls instanceof Closeable) {
+                    try {
+                        ((Closeable) urls).close();
+                    } catch (final IOException ex) {
+                        //nothing to do, the urls were read
+                    }
+                }
+                try {
+                    this.put(SitemapIndexUrls.DONE);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Log that the child sitemap could not be read (fully) and
+         * is skipped.
+         * @param ex Error.
+         */
+        private void skipped(final Exception ex) {
+            LOG.warn(
+                "Could not read sitemap " + this.location
+                + ", it is skipped.", ex
+            );
+        }
+
+        /**
+         * Put the url in the queue, waiting while it is full, unless the
+         * iterator is closed.
+         * @param url Url.
+         * @throws InterruptedException If interrupted.
+         */
+        private void put(final Url url) throws InterruptedException {
+            final SitemapIndexUrls parent = SitemapIndexUrls.this;
+            boolean queued = false;
+            while(!queued && !parent.closed) {
+                queued = parent.queue.offer(url, 1, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
@@ -31,21 +31,129 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import java.io.*;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
 import org.slf4j.Logger;
 
 /**
- * Represents a sitemap.xml file.
+ * Represents a sitemap.xml file. The file can be gzipped (it is
+ * decompressed on the fly) and, when its urls are streamed, it can also
+ * be a sitemap index.
  * @author Mihai Andronache (amihaiemil@gmail.com).
  */
 public final class SitemapXml {
 
+    /**
+     * JAXB context of the UrlSet; it is thread-safe and expensive to
+     * create, so it is created only once.
+     */
+    private static JAXBContext context;
+
+    /**
+     * Class logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(
+        SitemapXml.class
+    );
+
     /**
      * Sitemap as InputStream.
      */
     private InputStream sitemap;
 
+    /**
+     * How many child sitemaps of an index are fetched at the same time.
+     */
+    private final int threads;
+
+    /**
+     * Location of this sitemap (url or path on disk); null if unknown.
+     * The locations of the child sitemaps are resolved against it.
+     */
+    private final String location;
+
+    /**
+     * How many levels of sitemap indexes may still be followed.
+     */
+    private final int depth;
+
+    /**
+     * Locations of the sitemaps already read from this sitemap's index
+     * tree, shared by all its children.
+     */
+    private final Set<String> seen;
+
     public SitemapXml(InputStream is) {
+        this(is, 4);
+    }
+
+    /**
+     * Ctor.
+     * @param is Sitemap as InputStream.
+     * @param threads How many child sitemaps are fetched at the same time,
+     *  if this is a sitemap index.
+     */
+    public SitemapXml(InputStream is, int threads) {
+        this(
+            is, threads, null, 1,
+            Collections.synchronizedSet(new HashSet<String>())
+        );
+    }
+
+    /**
+     * Ctor. If this is a sitemap index, relative child locations are
+     * resolved against the given location and the children can be
+     * read from the disk only if the index is on the disk too.
+     * @param location Location of the sitemap.
+     * @throws IOException If the sitemap cannot be opened.
+     */
+    public SitemapXml(SitemapXmlLocation location) throws IOException {
+        this(location, 4);
+    }
+
+    /**
+     * Ctor. If this is a sitemap index, relative child locations are
+     * resolved against the given location and the children can be
+     * read from the disk only if the index is on the disk too.
+     * @param location Location of the sitemap.
+     * @param threads How many child sitemaps are fetched at the same time,
+     *  if this is a sitemap index.
+     * @throws IOException If the sitemap cannot be opened.
+     */
+    public SitemapXml(SitemapXmlLocation location, int threads)
+        throws IOException {
+        this(
+            location.getStream(), threads, location.origin(), 1,
+            Collections.synchronizedSet(new HashSet<String>())
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param is Sitemap as InputStream.
+     * @param threads How many child sitemaps are fetched at the same time,
+     *  if this is a sitemap index.
+     * @param location Location of the sitemap; null if unknown.
+     * @param depth How many levels of sitemap indexes may be followed.
+     * @param seen Locations already read from the same index tree;
+     *  a synchronized set, shared by the whole tree.
+     * @checkstyle ParameterNumber (5 lines)
+     */
+    SitemapXml(
+        InputStream is, int threads, String location, int depth,
+        Set<String> seen
+    ) {
         this.sitemap = is;
+        this.threads = threads;
+        this.location = location;
+        this.depth = depth;
+        this.seen = seen;
+        if(location != null) {
+            this.seen.add(location);
+        }
     }
 
     /**
@@ -54,12 +162,91 @@ public final class SitemapXml {
      * @return The unmarshaled UrlSet.
      */
     public UrlSet read() {
+        final InputStream xml = SitemapXml.decompressed(this.sitemap);
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(UrlSet.class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-            return UrlSet.class.cast(unmarshaller.unmarshal(this.sitemap));
+            Unmarshaller unmarshaller = SitemapXml.context()
+                .createUnmarshaller();
+            return UrlSet.class.cast(unmarshaller.unmarshal(xml));
         } catch (JAXBException ex) {
             throw new IllegalStateException("Could not parse sitemap.xml", ex);
+        } finally {
+            try {
+                xml.close();
+            } catch (final IOException ex) {
+                //nothing to do, the sitemap was read
+            }
+        }
+    }
+
+    /**
+     * Reads the urls one by one, as they are iterated, without keeping the
+     * whole sitemap in memory. Unlike {@link #read()}, duplicate urls are
+     * not removed.<br>
+     * If this is a sitemap index, the urls of all its child sitemaps are
+     * returned; the children are fetched concurrently (online, if their
+     * location is an http url, from the disk if the index is on the disk
+     * too). Indexes listed by an index are not followed, as the sitemaps
+     * protocol does not allow them, and each child is read only once.<br>
+     * The InputStream is closed after the last url is read! The returned
+     * iterator is also {@link Closeable}, to stop reading earlier.
+     * @return Iterator over the urls of the sitemap.
+     */
+    public Iterator<Url> urls() {
+        final StreamedUrls urls = new StreamedUrls(
+            SitemapXml.decompressed(this.sitemap)
+        );
+        final Iterator<Url> result;
+        if(urls.index() && this.depth <= 0) {
+            LOG.warn(
+                "Sitemap index " + this.location
+                + " is nested in another index, it is ignored."
+            );
+            urls.close();
+            result = Collections.<Url>emptyList().iterator();
+        } else if(urls.index()) {
+            result = new SitemapIndexUrls(
+                urls, this.threads, this.location, this.depth - 1, this.seen
+            );
+        } else {
+            result = urls;
+        }
+        return result;
+    }
+
+    /**
+     * The given stream, decompressed if it starts with the gzip magic
+     * bytes.
+     * @param stream Stream.
+     * @return Decompressed stream.
+     */
+    static InputStream decompressed(final InputStream stream) {
+        final InputStream buffered = new BufferedInputStream(stream);
+        try {
+            buffered.mark(2);
+            final int first = buffered.read();
+            final int second = buffered.read();
+            buffered.reset();
+            final InputStream result;
+            if(first == 0x1f && second == 0x8b) {
+                result = new GZIPInputStream(buffered);
+            } else {
+                result = buffered;
+            }
+            return result;
+        } catch (final IOException ex) {
+            throw new IllegalStateException("Could not read sitemap.xml", ex);
+        }
+    }
+
+    /**
+     * The JAXB context, created on first use.
+     * @return JAXBContext.
+     * @throws JAXBException If the context cannot be created.
+     */
+    private static synchronized JAXBContext context() throws JAXBException {
+        if(SitemapXml.context == null) {
+            SitemapXml.context = JAXBContext.newInstance(UrlSet.class);
         }
+        return SitemapXml.context;
     }
 }
@@ -34,4 +34,11 @@ import java.io.InputStream;
  */
 public interface SitemapXmlLocation {
     InputStream getStream() throws IOException;
+
+    /**
+     * Where is the sitemap? The locations of the child sitemaps of an
+     * index are resolved against it.
+     * @return Url, absolute path on disk or null if it is not known.
+     */
+    String origin();
 }
@@ -49,4 +49,9 @@ public final class SitemapXmlOnDisk implements SitemapXmlLocation {
         return new FileInputStream(new File(this.filepath));
     }
 
+    @Override
+    public String origin() {
+        return new File(this.filepath).getAbsolutePath();
+    }
+
 }
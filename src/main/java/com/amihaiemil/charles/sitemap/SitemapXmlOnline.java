@@ -24,12 +24,10 @@
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */package com.amihaiemil.charles.sitemap;
 
-import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -45,39 +43,67 @@ public final class SitemapXmlOnline implements SitemapXmlLocation {
     private CloseableHttpClient httpClient;
     
     /**
-     * Constructor.
+     * Constructor. A new http client is used every time the sitemap
+     * is fetched, so it can be fetched more times.
      * @param address Url of the online sitemap.
      */
     public SitemapXmlOnline(String address) {
-        this(HttpClientBuilder.create().build(), address);
+        this(null, address);
     }
     
     /**
      * Constructor.
      * @param address Url of the online sitemap.
-     * @param httpClient Given closeable http client.
+     * @param httpClient Given closeable http client. It is closed after
+     *  the sitemap is fetched.
      */
     public SitemapXmlOnline(CloseableHttpClient httpClient, String address) {
         this.xmlAddress = address;
         this.httpClient = httpClient;
     }
     
+    /**
+     * The sitemap, streamed from the response. Closing the stream
+     * releases the response and closes the http client.
+     * @return InputStream.
+     * @throws IOException If the sitemap cannot be fetched.
+     */
     @Override
     public InputStream getStream() throws IOException {
+        CloseableHttpClient client = this.httpClient;
+        if(client == null) {
+            client = HttpClientBuilder.create().build();
+        }
+        final CloseableHttpClient used = client;
         try {
-            CloseableHttpResponse response = httpClient.execute(new HttpGet(xmlAddress));
-            try {
-                return new ByteArrayInputStream(
-                    IOUtils.toByteArray(response.getEntity().getContent())
-                );
-            } finally {
-                response.close();
-            }
-        } catch (ClientProtocolException e) {
-            throw e;
-        } finally {
-            httpClient.close();
+            final CloseableHttpResponse response = client.execute(
+                new HttpGet(xmlAddress)
+            );
+            return new FilterInputStream(response.getEntity().getContent()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        try {
+                            response.close();
+                        } finally {
+                            used.close();
+                        }
+                    }
+                }
+            };
+        } catch (IOException ex) {
+            client.close();
+            throw ex;
+        } catch (RuntimeException ex) {
+            client.close();
+            throw ex;
         }
     }
 
+    @Override
+    public String origin() {
+        return this.xmlAddress;
+    }
 }
@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.sitemap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Urls of a sitemap.xml, read one by one with StAX, as they are needed.
+ * Only the current url is kept in memory, no matter how big the sitemap
+ * is. The stream is closed when the last url is read or if the sitemap
+ * is not valid.<br><br>
+ * If the document is a sitemap index, the locations of the child
+ * sitemaps are returned (see {@link #index()}).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+final class StreamedUrls implements Iterator<Url>, Closeable {
+
+    /**
+     * StAX factory; thread-safe once configured.
+     */
+    private static final XMLInputFactory FACTORY = StreamedUrls.factory();
+
+    /**
+     * Sitemap stream.
+     */
+    private final InputStream sitemap;
+
+    /**
+     * StAX reader.
+     */
+    private final XMLStreamReader xml;
+
+    /**
+     * Next url, already read; null if it was not read yet or if there
+     * are no more urls.
+     */
+    private Url next;
+
+    /**
+     * Is the whole sitemap read?
+     */
+    private boolean finished;
+
+    /**
+     * Is the document a sitemap index?
+     */
+    private final boolean index;
+
+    /**
+     * Ctor.
+     * @param sitemap Sitemap stream.
+     */
+    StreamedUrls(final InputStream sitemap) {
+        this.sitemap = sitemap;
+        try {
+            this.xml = StreamedUrls.FACTORY.createXMLStreamReader(sitemap);
+            this.xml.nextTag();
+            this.index = "sitemapindex".equals(this.xml.getLocalName());
+        } catch (final XMLStreamException ex) {
+            this.close();
+            throw new IllegalStateException("Could not parse sitemap.xml", ex);
+        }
+    }
+
+    /**
+     * Is the document a sitemap index? If so, the returned urls are
+     * the locations of the child sitemaps.
+     * @return True or false.
+     */
+    boolean index() {
+        return this.index;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(this.next == null && !this.finished) {
+            this.next = this.read();
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Url next() {
+        if(!this.hasNext()) {
+            throw new NoSuchElementException("No more urls in sitemap.xml");
+        }
+        final Url url = this.next;
+        this.next = null;
+        return url;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("#remove");
+    }
+
+    /**
+     * Read the next url element.
+     * @return Url or null if there are no more urls.
+     */
+    private Url read() {
+        Url url = null;
+        try {
+            while(url == null && this.xml.hasNext()) {
+                if(this.xml.next() == XMLStreamConstants.START_ELEMENT) {
+                    final String name = this.xml.getLocalName();
+                    if("url".equals(name) || "sitemap".equals(name)) {
+                        url = this.url();
+                    }
+                }
+            }
+        } catch (final XMLStreamException ex) {
+            this.close();
+            throw new IllegalStateException("Could not parse sitemap.xml", ex);
+        }
+        if(url == null) {
+            this.close();
+        }
+        return url;
+    }
+
+    /**
+     * Read the children of the current url element. Extensions (e.g.
+     * image:image) are skipped.
+     * @return Url.
+     * @throws XMLStreamException If the xml is not valid.
+     */
+    private Url url() throws XMLStreamException {
+        final Url url = new Url();
+        int event = this.xml.next();
+        while(event != XMLStreamConstants.END_ELEMENT) {
+            if(event == XMLStreamConstants.START_ELEMENT) {
+                final String name = this.xml.getLocalName();
+                if("loc".equals(name)) {
+                    url.setLoc(this.xml.getElementText().trim());
+                } else if("lastmod".equals(name)) {
+                    url.setLastmod(this.xml.getElementText().trim());
+                } else if("changefreq".equals(name)) {
+                    url.setChangefreq(this.xml.getElementText().trim());
+                } else if("priority".equals(name)) {
+                    url.setPriority(this.xml.getElementText().trim());
+                } else {
+                    this.skip();
+                }
+            }
+            event = this.xml.next();
+        }
+        return url;
+    }
+
+    /**
+     * Skip the current element, with all its children.
+     * @throws XMLStreamException If the xml is not valid.
+     */
+    private void skip() throws XMLStreamException {
+        int depth = 1;
+        while(depth > 0) {
+            final int event = this.xml.next();
+            if(event == XMLStreamConstants.START_ELEMENT) {
+                depth = depth + 1;
+            } else if(event == XMLStreamConstants.END_ELEMENT) {
+                depth = depth - 1;
+            }
+        }
+    }
+
+    /**
+     * Close the reader and the stream, quietly. Called automatically
+     * after the last url is read.
+     */
+    @Override
+    public void close() {
+        this.finished = true;
+        try {
+            if(this.xml != null) {
+                this.xml.close();
+            }
+        } catch (final XMLStreamException ex) {
+            //nothing to do, the stream is closed below
+        } finally {
+            try {
+                this.sitemap.close();
+            } catch (final IOException ex) {
+                //nothing to do, everything was read
+            }
+        }
+    }
+
+    /**
+     * StAX factory which does not resolve DTDs or external entities.
+     * @return XMLInputFactory.
+     */
+    private static XMLInputFactory factory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(
+            XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false
+        );
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
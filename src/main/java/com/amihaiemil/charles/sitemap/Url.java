@@ -28,6 +28,9 @@ package com.amihaiemil.charles.sitemap;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlTransient;
+
+import com.amihaiemil.charles.UrlCanonicalizer;
 
 /**
  * Url from sitemap.xml
@@ -84,12 +87,24 @@ public final class Url {
      */
     @XmlElement(name="priority")
     private String priority;
+    /**
+     * Cached canonical form of the location.
+     */
+    @XmlTransient
+    private String canonical;
+
+    /**
+     * Canonicalizer of the locations.
+     */
+    private static final UrlCanonicalizer CANONICALIZER =
+        new UrlCanonicalizer();
 
     public String getLoc() {
         return loc;
     }
     public void setLoc(String loc) {
         this.loc = loc;
+        this.canonical = null;
     }
     public String getPriority() {
         return priority;
@@ -110,67 +125,45 @@ public final class Url {
         this.lastmod = lastmod;
     }
 
+    /**
+     * Canonical form of the location, used as identity of this Url.
+     * It is computed only once.
+     * @return Canonical location or null if the location is null.
+     */
+    String canonical() {
+        String key = this.canonical;
+        if(key == null && this.loc != null) {
+            key = Url.CANONICALIZER.canonical(this.loc);
+            this.canonical = key;
+        }
+        return key;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
             return true;
         }
-        if (obj == null) {
+        if (obj == null || getClass() != obj.getClass()) {
             return false;
         }
-        if (getClass() != obj.getClass()) {
-            return false;
+        final String key = this.canonical();
+        final String other = ((Url) obj).canonical();
+        if (key == null) {
+            return other == null;
         }
-        Url other = (Url) obj;
-        if (loc == null) {
-            if (other.loc != null)
-                return false;
-        } else {
-            //get rid of any # fragment
-            if(this.loc.contains("#") && other.loc.contains("#")) {
-                return new Url(this.loc.substring(0, loc.indexOf("#"))).equals(
-                                new  Url(other.loc.substring(0, other.loc.indexOf("#")))
-                            );
-            } else if (this.loc.contains("#")) {
-                return new  Url(this.loc.substring(0, loc.indexOf("#"))).equals(
-                                new  Url(other.loc)
-                            );
-            } else if (other.loc.contains("#")) {
-                return new  Url(this.loc).equals(
-                                new  Url(other.loc.substring(0, other.loc.indexOf("#")))
-                            );
-            }
-            
-            if(this.loc.endsWith("/") && other.loc.endsWith("/")) {
-                return this.loc.substring(0, loc.length()-1).equals(
-                                other.loc.substring(0, other.loc.length()-1)
-                            );
-            } else if (this.loc.endsWith("/")) {
-                return this.loc.substring(0, loc.length()-1).equals(other.loc);
-            } else if (other.loc.endsWith("/")) {
-                return this.loc.equals(other.loc.substring(0, other.loc.length()-1));
-            }
-        }
-        return this.loc.equals(other.loc);
+        return key.equals(other);
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        if(this.loc == null) {
-            result =  prime * result + 0;
+        final String key = this.canonical();
+        final int result;
+        if(key == null) {
+            result = 0;
         } else {
-            if(this.loc.contains("#")) {
-                result = new Url(loc.substring(0, loc.indexOf("#"))).hashCode();
-            } else {
-                if(this.loc.endsWith("/")) {
-                    result = prime * result + this.loc.substring(0, this.loc.length()-1).hashCode();
-                } else {
-                    result = prime * result + this.loc.hashCode();
-                }
-            }
-         }
+            result = key.hashCode();
+        }
         return result;
     }
 }
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link AsyncRepository}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class AsyncRepositoryTestCase {
+
+    /**
+     * AsyncRepository exports copies of all the batches before closing.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void exportsAllBatches() throws Exception {
+        final InMemoryRepository memory = new InMemoryRepository();
+        final AsyncRepository repo = new AsyncRepository(memory, 1);
+        final List<WebPage> batch = new ArrayList<WebPage>();
+        for(int idx = 0; idx < 50; ++idx) {
+            batch.add(this.page("http://www.test.com/" + idx));
+            if(batch.size() == 5) {
+                repo.export(batch);
+                batch.clear();
+            }
+        }
+        repo.export(batch);
+        repo.close();
+        MatcherAssert.assertThat(
+            memory.getCrawledPages(), Matchers.hasSize(50)
+        );
+        MatcherAssert.assertThat(
+            memory.getCrawledPages().get(49).getUrl(),
+            Matchers.is("http://www.test.com/49")
+        );
+    }
+
+    /**
+     * AsyncRepository throws the export error when closed and on the next
+     * export.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void surfacesExportErrors() throws Exception {
+        final Repository failing = Mockito.mock(Repository.class);
+        Mockito.doThrow(new DataExportException("disk full"))
+            .when(failing).export(Mockito.anyListOf(WebPage.class));
+        final AsyncRepository repo = new AsyncRepository(failing);
+        repo.export(Arrays.asList(this.page("http://www.test.com")));
+        try {
+            repo.flush();
+            MatcherAssert.assertThat("Flush should fail!", false);
+        } catch (final DataExportException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(), Matchers.is("disk full")
+            );
+        }
+        try {
+            repo.export(Arrays.asList(this.page("http://www.test.com/a")));
+            MatcherAssert.assertThat("Export should fail!", false);
+        } catch (final DataExportException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(), Matchers.is("disk full")
+            );
+        }
+        try {
+            new AsyncExportCrawl(
+                new WebCrawl() {
+                    @Override
+                    public void crawl() throws DataExportException {
+                        repo.export(
+                            Arrays.asList(page("http://www.test.com/b"))
+                        );
+                    }
+                },
+                repo
+            ).crawl();
+            MatcherAssert.assertThat("Crawl should fail!", false);
+        } catch (final DataExportException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(), Matchers.is("disk full")
+            );
+        }
+    }
+
+    /**
+     * A crawled page.
+     * @param url Url of the page.
+     * @return WebPage.
+     */
+    private WebPage page(final String url) {
+        final WebPage page = new SnapshotWebPage();
+        page.setUrl(url);
+        return page;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link BreadthFirstFrontier} and
+ * {@link DepthFirstFrontier}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class BreadthFirstFrontierTestCase {
+
+    /**
+     * BreadthFirstFrontier returns the links in the order they were added.
+     */
+    @Test
+    public void returnsLinksInFifoOrder() {
+        final Frontier frontier = new BreadthFirstFrontier();
+        MatcherAssert.assertThat(frontier.isEmpty(), Matchers.is(true));
+        frontier.add(new Link("a", "http://www.test.com/a"), 1);
+        frontier.add(new Link("b", "http://www.test.com/b"), 2);
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("a")
+        );
+        MatcherAssert.assertThat(frontier.depth(), Matchers.is(1));
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("b")
+        );
+        MatcherAssert.assertThat(frontier.depth(), Matchers.is(2));
+        MatcherAssert.assertThat(frontier.isEmpty(), Matchers.is(true));
+        MatcherAssert.assertThat(frontier.next(), Matchers.nullValue());
+    }
+
+    /**
+     * DepthFirstFrontier returns the last added link first.
+     */
+    @Test
+    public void depthFirstReturnsLinksInLifoOrder() {
+        final Frontier frontier = new DepthFirstFrontier();
+        frontier.add(new Link("a", "http://www.test.com/a"), 1);
+        frontier.add(new Link("b", "http://www.test.com/b"), 2);
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("b")
+        );
+        MatcherAssert.assertThat(frontier.depth(), Matchers.is(2));
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("a")
+        );
+        MatcherAssert.assertThat(frontier.depth(), Matchers.is(1));
+    }
+
+    /**
+     * DepthLimitedFrontier refuses the links which are too deep.
+     */
+    @Test
+    public void depthLimitedRefusesDeepLinks() {
+        final Frontier frontier = new DepthLimitedFrontier(1);
+        MatcherAssert.assertThat(
+            frontier.add(new Link("a", "http://www.test.com/a"), 1),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            frontier.add(new Link("b", "http://www.test.com/b"), 2),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("a")
+        );
+        MatcherAssert.assertThat(frontier.isEmpty(), Matchers.is(true));
+    }
+}
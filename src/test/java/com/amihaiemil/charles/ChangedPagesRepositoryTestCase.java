@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ChangedPagesRepository}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class ChangedPagesRepositoryTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * ChangedPagesRepository forwards only the new and the changed pages,
+     * also after it is recreated with the same history file.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void exportsOnlyChangedPages() throws Exception {
+        final File file = new File(this.folder.getRoot(), "hashes.txt");
+        final InMemoryRepository repo = new InMemoryRepository();
+        new ChangedPagesRepository(repo, new FileCrawlHistory(file)).export(
+            Arrays.asList(
+                ChangedPagesRepositoryTestCase.page("a", "Text A", "x"),
+                ChangedPagesRepositoryTestCase.page("b", "Text B", "x")
+            )
+        );
+        new ChangedPagesRepository(repo, new FileCrawlHistory(file)).export(
+            Arrays.asList(
+                ChangedPagesRepositoryTestCase.page("a", "Text A", "x"),
+                ChangedPagesRepositoryTestCase.page("b", "Text B", "y"),
+                ChangedPagesRepositoryTestCase.page("c", "Text C", "x")
+            )
+        );
+        final List<String> exported = new ArrayList<String>();
+        for(final WebPage page : repo.getCrawledPages()) {
+            exported.add(page.getUrl());
+        }
+        MatcherAssert.assertThat(
+            exported,
+            Matchers.contains(
+                "http://www.test.com/a", "http://www.test.com/b",
+                "http://www.test.com/b", "http://www.test.com/c"
+            )
+        );
+    }
+
+    /**
+     * ChangedPagesRepository does not remember the pages which the
+     * original repository failed to export.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void retriesFailedPages() throws Exception {
+        final InMemoryRepository repo = new InMemoryRepository();
+        final List<WebPage> pages = Arrays.asList(
+            ChangedPagesRepositoryTestCase.page("a", "Text A", "x")
+        );
+        final CrawlHistory hashes = new InMemoryCrawlHistory();
+        try {
+            new ChangedPagesRepository(
+                new Repository() {
+                    @Override
+                    public void export(final List<WebPage> pages)
+                        throws DataExportException {
+                        throw new DataExportException("Failed!");
+                    }
+                    @Override
+                    public void flush() {
+                        //nothing to wait for
+                    }
+                },
+                hashes
+            ).export(pages);
+            Assert.fail("DataExportException was expected.");
+        } catch (final DataExportException ex) {
+            MatcherAssert.assertThat(ex.getMessage(), Matchers.is("Failed!"));
+        }
+        new ChangedPagesRepository(repo, hashes).export(pages);
+        MatcherAssert.assertThat(repo.getCrawledPages(), Matchers.hasSize(1));
+    }
+
+    /**
+     * A page.
+     * @param name Name of the page.
+     * @param text Text of the page.
+     * @param link Href of the only link on the page.
+     * @return WebPage.
+     */
+    private static WebPage page(
+        final String name, final String text, final String link
+    ) {
+        final WebPage page = new SnapshotWebPage();
+        page.setName(name);
+        page.setUrl("http://www.test.com/" + name);
+        page.setTitle(name);
+        page.setTextContent(text);
+        page.getLinks().add(new Link(link, "http://www.test.com/" + link));
+        return page;
+    }
+}
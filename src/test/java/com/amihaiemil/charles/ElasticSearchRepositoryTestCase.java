@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+import com.jcabi.http.mock.MkQuery;
+
+/**
+ * Unit tests for {@link ElasticSearchRepository}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class ElasticSearchRepositoryTestCase {
+
+    /**
+     * ElasticSearchRepository sends the batch as one NDJSON bulk request.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sendsBulkRequest() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            server.next(
+                new MkAnswer.Simple(
+                    ElasticSearchRepositoryTestCase.resource(
+                        "elasticIndexResponse.json"
+                    )
+                )
+            );
+            new ElasticSearchRepository(
+                server.home().toString(), "charles", "tech"
+            ).export(ElasticSearchRepositoryTestCase.pages(2));
+            final MkQuery query = server.take();
+            MatcherAssert.assertThat(query.method(), Matchers.is("POST"));
+            MatcherAssert.assertThat(
+                query.uri().getPath(), Matchers.is("/charles/_bulk")
+            );
+            final String[] lines = query.body().split("\n");
+            MatcherAssert.assertThat(lines.length, Matchers.is(4));
+            final ObjectMapper mapper = new ObjectMapper();
+            final JsonNode action = mapper.readTree(lines[2]);
+            MatcherAssert.assertThat(
+                action.path("index").path("_id").asText(),
+                Matchers.is("http://amihaiemil.com/page1.html")
+            );
+            MatcherAssert.assertThat(
+                action.path("index").path("_type").asText(),
+                Matchers.is("tech")
+            );
+            final JsonNode doc = mapper.readTree(lines[3]);
+            MatcherAssert.assertThat(
+                doc.path("id").asText(),
+                Matchers.is("http://amihaiemil.com/page1.html")
+            );
+            MatcherAssert.assertThat(
+                doc.path("title").asText(), Matchers.is("page | title")
+            );
+            MatcherAssert.assertThat(
+                doc.path("links").get(0).path("href").asText(),
+                Matchers.is("http://amihaiemil.com")
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * ElasticSearchRepository reports the pages which were not indexed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void reportsFailedItems() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            server.next(
+                new MkAnswer.Simple(
+                    "{\"took\":3,\"errors\":true,\"items\":["
+                    + "{\"index\":{\"_id\":"
+                    + "\"http://amihaiemil.com/page0.html\",\"status\":201}},"
+                    + "{\"index\":{\"_id\":"
+                    + "\"http://amihaiemil.com/page1.html\","
+                    + "\"status\":400,\"error\":{\"type\":\"mapper_parsing_"
+                    + "exception\",\"reason\":\"failed to parse\"}}}]}"
+                )
+            );
+            new ElasticSearchRepository(
+                server.home().toString(), "charles"
+            ).export(ElasticSearchRepositoryTestCase.pages(2));
+            Assert.fail("DataExportException was expected.");
+        } catch (final DataExportException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(),
+                Matchers.is(
+                    "1 of 2 pages could not be indexed: "
+                    + "[http://amihaiemil.com/page1.html (failed to parse)]"
+                )
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * ElasticSearchRepository accepts a reply without content.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void acceptsNoContent() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            server.next(new MkAnswer.Simple(204, ""));
+            new ElasticSearchRepository(
+                server.home().toString(), "charles"
+            ).export(ElasticSearchRepositoryTestCase.pages(1));
+            MatcherAssert.assertThat(server.queries(), Matchers.is(1));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * ElasticSearchRepository fails if the bulk request fails.
+     * @throws Exception If something goes wrong.
+     */
+    @Test(expected = DataExportException.class)
+    public void failsOnErrorStatus() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            server.next(new MkAnswer.Simple(503, "unavailable"));
+            new ElasticSearchRepository(
+                server.home().toString(), "charles"
+            ).export(ElasticSearchRepositoryTestCase.pages(1));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * ElasticSearchRepository closes its HTTP client when it is closed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void closesClient() throws Exception {
+        final CloseableHttpClient client = Mockito.mock(
+            CloseableHttpClient.class
+        );
+        new ElasticSearchRepository(
+            client, "http://localhost:9200", "charles", "page"
+        ).close();
+        Mockito.verify(client).close();
+    }
+
+    /**
+     * Some pages.
+     * @param count Number of pages.
+     * @return Pages.
+     */
+    private static List<WebPage> pages(final int count) {
+        final List<WebPage> pages = new ArrayList<WebPage>();
+        for(int idx = 0; idx < count; ++idx) {
+            final WebPage page = new SnapshotWebPage();
+            page.setName("page" + idx + ".html");
+            page.setUrl("http://amihaiemil.com/page" + idx + ".html");
+            page.setTitle("page | title");
+            page.setTextContent("text content...");
+            page.getLinks().add(new Link("Home", "http://amihaiemil.com"));
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    /**
+     * Content of a test resource.
+     * @param name Name of the resource.
+     * @return Content.
+     */
+    private static String resource(final String name) {
+        final Scanner scanner = new Scanner(
+            ElasticSearchRepositoryTestCase.class.getClassLoader()
+                .getResourceAsStream(name),
+            "UTF-8"
+        );
+        try {
+            return scanner.useDelimiter("\\A").next();
+        } finally {
+            scanner.close();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Scanner;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link FileCrawlHistory}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class FileCrawlHistoryTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * FileCrawlHistory remembers the latest record of each page
+     * after it is reopened.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void persistsLatestRecords() throws Exception {
+        final File file = new File(this.folder.getRoot(), "history.txt");
+        final FileCrawlHistory history = new FileCrawlHistory(file);
+        MatcherAssert.assertThat(
+            history.crawled("http://www.test.com"), Matchers.is(-1L)
+        );
+        history.record("http://www.test.com", 10L, -5L, 1L);
+        history.record("http://www.test.com/a", 20L, 7L, -1L);
+        history.record("http://www.test.com", 30L, Long.MIN_VALUE, 3L);
+        history.save();
+        final FileCrawlHistory reopened = new FileCrawlHistory(file);
+        MatcherAssert.assertThat(
+            reopened.crawled("http://www.test.com"), Matchers.is(30L)
+        );
+        MatcherAssert.assertThat(
+            reopened.hash("http://www.test.com"), Matchers.is(Long.MIN_VALUE)
+        );
+        MatcherAssert.assertThat(
+            reopened.crawled("http://www.test.com/a"), Matchers.is(20L)
+        );
+        MatcherAssert.assertThat(
+            reopened.hash("http://www.test.com/a"), Matchers.is(7L)
+        );
+        MatcherAssert.assertThat(
+            reopened.lastmod("http://www.test.com"), Matchers.is(3L)
+        );
+        MatcherAssert.assertThat(
+            reopened.lastmod("http://www.test.com/a"), Matchers.is(-1L)
+        );
+    }
+
+    /**
+     * FileCrawlHistory compacts the file when it is opened, keeping only
+     * the latest record of each page.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void compactsFile() throws Exception {
+        final File file = new File(this.folder.getRoot(), "history.txt");
+        final FileCrawlHistory history = new FileCrawlHistory(file);
+        for(int idx = 0; idx < 10; ++idx) {
+            history.record("http://www.test.com", idx, idx, idx);
+        }
+        history.save();
+        new FileCrawlHistory(file);
+        final Scanner scanner = new Scanner(file, "UTF-8");
+        try {
+            MatcherAssert.assertThat(
+                scanner.useDelimiter("\\A").next(),
+                Matchers.equalTo("9\t9\t9\thttp://www.test.com\n")
+            );
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /**
+     * FileCrawlHistory skips the lines which are not complete records.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void skipsIncompleteRecords() throws Exception {
+        final File file = this.folder.newFile("history.txt");
+        final Writer writer = new OutputStreamWriter(
+            new FileOutputStream(file), "UTF-8"
+        );
+        try {
+            writer.write("10\tff\thttp://www.test.com/a\n");
+            writer.write("10\tff\t20\thttp://www.test.com\n");
+            writer.write("30\tff\thttp");
+        } finally {
+            writer.close();
+        }
+        final FileCrawlHistory history = new FileCrawlHistory(file);
+        MatcherAssert.assertThat(
+            history.crawled("http://www.test.com"), Matchers.is(10L)
+        );
+        MatcherAssert.assertThat(
+            history.hash("http://www.test.com"), Matchers.is(255L)
+        );
+        MatcherAssert.assertThat(
+            history.lastmod("http://www.test.com"), Matchers.is(20L)
+        );
+        MatcherAssert.assertThat(
+            history.crawled("http://www.test.com/a"), Matchers.is(-1L)
+        );
+    }
+}
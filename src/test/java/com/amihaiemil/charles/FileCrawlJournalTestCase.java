@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link FileCrawlJournal}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class FileCrawlJournalTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * FileCrawlJournal ignores the last line if it was cut mid-href
+     * and appends the next events on a new line.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void resumesFromTruncatedJournal() throws Exception {
+        final File file = this.folder.newFile("journal.txt");
+        FileCrawlJournalTestCase.write(
+            file,
+            "Q\t0\thttp://www.test.com\nQ\t1\thttp://www.test.com/a\n"
+            + "D\thttp://www.test.com\nQ\t1\thttp://www.te"
+        );
+        final FileCrawlJournal journal = new FileCrawlJournal(file);
+        final Frontier frontier = new BreadthFirstFrontier();
+        journal.resume(frontier, new InMemoryVisitedLinks());
+        MatcherAssert.assertThat(
+            frontier.next().getHref(),
+            Matchers.equalTo("http://www.test.com/a")
+        );
+        MatcherAssert.assertThat(frontier.isEmpty(), Matchers.is(true));
+        journal.queued(new Link("b", "http://www.test.com/b"), 1);
+        journal.close();
+        final Frontier resumed = new BreadthFirstFrontier();
+        new FileCrawlJournal(file).resume(
+            resumed, new InMemoryVisitedLinks()
+        );
+        MatcherAssert.assertThat(
+            resumed.next().getHref(),
+            Matchers.equalTo("http://www.test.com/a")
+        );
+        MatcherAssert.assertThat(
+            resumed.next().getHref(),
+            Matchers.equalTo("http://www.test.com/b")
+        );
+        MatcherAssert.assertThat(resumed.isEmpty(), Matchers.is(true));
+    }
+
+    /**
+     * FileCrawlJournal flushes the repository before the checkpoint, so
+     * pages which could not be exported are queued again on resume.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void flushesRepositoryBeforeCheckpoint() throws Exception {
+        final File file = this.folder.newFile("journal.txt");
+        final FileCrawlJournal journal = new FileCrawlJournal(file);
+        final Link link = new Link("a", "http://www.test.com/a");
+        journal.queued(link, 0);
+        final Repository repo = Mockito.mock(Repository.class);
+        Mockito.doThrow(new DataExportException("Export failed!"))
+            .when(repo).flush();
+        try {
+            journal.exported(repo, Arrays.asList(link));
+            MatcherAssert.assertThat("Checkpoint did not fail!", false);
+        } catch (final DataExportException ex) {
+            journal.close();
+            final Frontier frontier = new BreadthFirstFrontier();
+            new FileCrawlJournal(file).resume(
+                frontier, new InMemoryVisitedLinks()
+            );
+            MatcherAssert.assertThat(
+                frontier.next().getHref(),
+                Matchers.equalTo("http://www.test.com/a")
+            );
+        }
+    }
+
+    /**
+     * Write the given content to the file.
+     * @param file File.
+     * @param content Content.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void write(final File file, final String content)
+        throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
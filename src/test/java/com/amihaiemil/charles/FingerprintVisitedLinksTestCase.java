@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.Arrays;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link FingerprintVisitedLinks}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class FingerprintVisitedLinksTestCase {
+
+    /**
+     * FingerprintVisitedLinks remembers the links, growing as needed.
+     */
+    @Test
+    public void remembersLinks() {
+        this.remembers(new FingerprintVisitedLinks(10));
+    }
+
+    /**
+     * FingerprintVisitedLinks behind a Bloom filter remembers the links.
+     */
+    @Test
+    public void remembersLinksBehindBloomFilter() {
+        this.remembers(
+            new BloomVisitedLinks(new FingerprintVisitedLinks(), 100)
+        );
+    }
+
+    /**
+     * FingerprintVisitedLinks treats equal links as the same link.
+     */
+    @Test
+    public void recognizesEqualLinks() {
+        final VisitedLinks visited = new FingerprintVisitedLinks();
+        visited.add(new Link("a", "http://www.test.com/page.html"));
+        MatcherAssert.assertThat(
+            visited.contains(new Link("b", "http://www.test.com/page.html/")),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            visited.contains(new Link("c", "http://www.test.com/page.html#x")),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            visited.contains(new Link("d", "http://www.test.com/page")),
+            Matchers.is(false)
+        );
+        visited.clear();
+        MatcherAssert.assertThat(
+            visited.contains(new Link("a", "http://www.test.com/page.html")),
+            Matchers.is(false)
+        );
+    }
+
+    /**
+     * VisitedLinks use the given canonicalizer to decide which links
+     * are the same.
+     */
+    @Test
+    public void recognizesLinksWithGivenCanonicalizer() {
+        final UrlCanonicalizer canon = new UrlCanonicalizer(
+            true, Arrays.asList("utm_*")
+        );
+        final VisitedLinks[] all = {
+            new FingerprintVisitedLinks(canon),
+            new InMemoryVisitedLinks(canon),
+            new BloomVisitedLinks(
+                new FingerprintVisitedLinks(canon), 100, canon
+            ),
+        };
+        for(final VisitedLinks visited : all) {
+            visited.add(new Link("a", "http://www.test.com/a?x=1&y=2"));
+            MatcherAssert.assertThat(
+                visited.contains(
+                    new Link("b", "http://www.test.com/a?y=2&utm_id=3&x=1")
+                ),
+                Matchers.is(true)
+            );
+            MatcherAssert.assertThat(
+                visited.contains(new Link("c", "http://www.test.com/a?x=1")),
+                Matchers.is(false)
+            );
+        }
+    }
+
+    /**
+     * Check that the given VisitedLinks remembers many links.
+     * @param visited VisitedLinks.
+     */
+    private void remembers(final VisitedLinks visited) {
+        for(int idx = 0; idx < 10000; ++idx) {
+            MatcherAssert.assertThat(
+                visited.add(new Link("", "http://www.test.com/" + idx)),
+                Matchers.is(true)
+            );
+        }
+        for(int idx = 0; idx < 10000; ++idx) {
+            MatcherAssert.assertThat(
+                visited.contains(new Link("", "http://www.test.com/" + idx)),
+                Matchers.is(true)
+            );
+            MatcherAssert.assertThat(
+                visited.add(new Link("", "http://www.test.com/" + idx)),
+                Matchers.is(false)
+            );
+        }
+        MatcherAssert.assertThat(
+            visited.contains(new Link("", "http://www.test.com/x")),
+            Matchers.is(false)
+        );
+    }
+}
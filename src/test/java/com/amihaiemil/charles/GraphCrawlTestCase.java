@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Unit tests for {@link GraphCrawl}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class GraphCrawlTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * GraphCrawl crawls every page of the site exactly once, including
+     * the last one found.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void crawlsEachPageOnce() throws Exception {
+        final MockWebsite site = new MockWebsite()
+            .page(
+                "http://www.test.com",
+                "http://www.test.com/a.html", "http://www.test.com/b.html"
+            )
+            .page(
+                "http://www.test.com/a.html",
+                "http://www.test.com/", "http://www.test.com/b.html#top"
+            )
+            .page("http://www.test.com/b.html", "http://www.test.com/c.html")
+            .page("http://www.test.com/c.html");
+        final WebDriver driver = site.driver();
+        final InMemoryRepository repo = new InMemoryRepository();
+        new GraphCrawl("http://www.test.com", driver, repo, 3).crawl();
+        final Set<String> urls = new HashSet<String>();
+        for(final WebPage page : repo.getCrawledPages()) {
+            MatcherAssert.assertThat(
+                "Page crawled 2 times!", urls.add(page.getUrl()),
+                Matchers.is(true)
+            );
+        }
+        MatcherAssert.assertThat(
+            urls,
+            Matchers.containsInAnyOrder(
+                "http://www.test.com", "http://www.test.com/a.html",
+                "http://www.test.com/b.html", "http://www.test.com/c.html"
+            )
+        );
+        Mockito.verify(driver).quit();
+    }
+
+    /**
+     * GraphCrawl stops at the depth allowed by the frontier.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void stopsAtMaxDepth() throws Exception {
+        final MockWebsite site = new MockWebsite()
+            .page("http://www.test.com", "http://www.test.com/a.html")
+            .page("http://www.test.com/a.html", "http://www.test.com/b.html")
+            .page("http://www.test.com/b.html", "http://www.test.com/c.html")
+            .page("http://www.test.com/c.html");
+        final InMemoryRepository repo = new InMemoryRepository();
+        new GraphCrawl(
+            "http://www.test.com", site.driver(), new IgnoredPatterns(),
+            repo, 20, new DepthLimitedFrontier(new DepthFirstFrontier(), 2)
+        ).crawl();
+        MatcherAssert.assertThat(repo.getCrawledPages(), Matchers.hasSize(3));
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/c.html"), Matchers.is(0)
+        );
+    }
+
+    /**
+     * GraphCrawl can keep the frontier and the visited links on disk.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void crawlsWithMappedFrontier() throws Exception {
+        final MockWebsite site = new MockWebsite()
+            .page(
+                "http://www.test.com",
+                "http://www.test.com/a.html", "http://www.test.com/b.html"
+            )
+            .page("http://www.test.com/a.html", "http://www.test.com/b.html")
+            .page("http://www.test.com/b.html", "http://www.test.com/");
+        final String dir = this.folder.newFolder().getAbsolutePath();
+        final InMemoryRepository repo = new InMemoryRepository();
+        new GraphCrawl(
+            "http://www.test.com", site.driver(), new IgnoredPatterns(),
+            repo, 20, new MappedFrontier(dir), new MappedVisitedLinks(dir)
+        ).crawl();
+        MatcherAssert.assertThat(repo.getCrawledPages(), Matchers.hasSize(3));
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/b.html"), Matchers.is(1)
+        );
+    }
+
+    /**
+     * GraphCrawl's journal flushes the repository before the checkpoint,
+     * so pages which failed to be exported are not recorded as exported.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void checkpointsOnlyFlushedPages() throws Exception {
+        final MockWebsite site = new MockWebsite()
+            .page("http://www.test.com", "http://www.test.com/a")
+            .page("http://www.test.com/a");
+        final Repository failing = new Repository() {
+            @Override
+            public void export(final List<WebPage> pages)
+                throws DataExportException {
+                throw new DataExportException("Export failed!");
+            }
+            @Override
+            public void flush() {
+                //nothing to wait for
+            }
+        };
+        final File file = this.folder.newFile("journal.txt");
+        try {
+            new GraphCrawl(
+                "http://www.test.com", site.driver(), new IgnoredPatterns(),
+                new AsyncRepository(failing), 1, new BreadthFirstFrontier(),
+                new InMemoryVisitedLinks(), new FileCrawlJournal(file)
+            ).crawl();
+            MatcherAssert.assertThat("Crawl did not fail!", false);
+        } catch (final DataExportException ex) {
+            final Frontier frontier = new BreadthFirstFrontier();
+            new FileCrawlJournal(file).resume(
+                frontier, new InMemoryVisitedLinks()
+            );
+            MatcherAssert.assertThat(
+                frontier.next().getHref(),
+                Matchers.equalTo("http://www.test.com")
+            );
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+
+/**
+ * Unit tests for {@link HttpBrowser}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class HttpBrowserTestCase {
+
+    /**
+     * HttpBrowser fetches and parses a static page.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void snapshotsStaticPage() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            final String home = server.home().toString();
+            server.next(
+                new MkAnswer.Simple(
+                    "<html><head><title>Docs</title></head><body>"
+                    + "<p>Hello <b>world</b></p><script>var x;</script>"
+                    + "<a href='/about'>About</a> "
+                    + "<a href='http://www.other.com/'>Other</a> "
+                    + "<a>No href</a></body></html>"
+                ).withHeader("Content-Type", "text/html; charset=UTF-8")
+            );
+            final HttpBrowser browser = new HttpBrowser();
+            final WebPage page = browser.snapshot(home + "docs/page");
+            browser.quit();
+            MatcherAssert.assertThat(page.getTitle(), Matchers.is("Docs"));
+            MatcherAssert.assertThat(page.getName(), Matchers.is("page"));
+            MatcherAssert.assertThat(
+                page.getTextContent(),
+                Matchers.is("Hello world About Other No href")
+            );
+            MatcherAssert.assertThat(page.getLinks(), Matchers.hasSize(1));
+            MatcherAssert.assertThat(
+                page.getLinks().iterator().next().getHref(),
+                Matchers.is(home + "about")
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * HttpBrowser does not parse text documents which are not HTML.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void skipsTextWhichIsNotHtml() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            server.next(
+                new MkAnswer.Simple("body { color: red; }")
+                    .withHeader("Content-Type", "text/css")
+            );
+            final HttpBrowser browser = new HttpBrowser();
+            try {
+                MatcherAssert.assertThat(
+                    browser.snapshot(server.home().toString() + "style.css")
+                        .getTextContent(),
+                    Matchers.isEmptyString()
+                );
+            } finally {
+                browser.quit();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * HttpBrowser does not snapshot error pages.
+     * @throws Exception If something goes wrong.
+     */
+    @Test(expected = IOException.class)
+    public void rejectsErrorPage() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            server.next(
+                new MkAnswer.Simple(404, "<html><body>Not found</body></html>")
+                    .withHeader("Content-Type", "text/html")
+            );
+            final HttpBrowser browser = new HttpBrowser();
+            try {
+                browser.snapshot(server.home().toString() + "missing");
+            } finally {
+                browser.quit();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * ParallelGraphCrawl can crawl a site over plain HTTP.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void crawlsOverHttp() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            final String home = server.home().toString();
+            server.next(
+                new MkAnswer.Simple(
+                    "<html><body><a href='" + home + "about'>About</a>"
+                    + "</body></html>"
+                ).withHeader("Content-Type", "text/html")
+            ).next(
+                new MkAnswer.Simple(
+                    "<html><body><a href='" + home + "'>Home</a>"
+                    + "</body></html>"
+                ).withHeader("Content-Type", "text/html")
+            );
+            final InMemoryRepository repo = new InMemoryRepository();
+            new ParallelGraphCrawl(
+                home, Collections.nCopies(1, new HttpBrowser()),
+                new IgnoredPatterns(), repo, 10,
+                new BreadthFirstFrontier(), new InMemoryVisitedLinks()
+            ).crawl();
+            final ArrayList<String> urls = new ArrayList<String>();
+            for(final WebPage page : repo.getCrawledPages()) {
+                urls.add(page.getUrl());
+            }
+            MatcherAssert.assertThat(
+                urls, Matchers.contains(home, home + "about")
+            );
+            MatcherAssert.assertThat(server.queries(), Matchers.is(2));
+        } finally {
+            server.stop();
+        }
+    }
+}
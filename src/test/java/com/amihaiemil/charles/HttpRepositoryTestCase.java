@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+import com.jcabi.http.mock.MkQuery;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpRepository}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class HttpRepositoryTestCase {
+
+    /**
+     * HttpRepository POSTs the batch as gzipped json, retrying after
+     * a 5xx status.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void postsGzippedBatchWithRetry() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            server.next(new MkAnswer.Simple(503, "busy"))
+                .next(new MkAnswer.Simple(200, "ok"));
+            new HttpRepository(
+                PooledHttpClient.create(2), server.home().toString() + "pages",
+                true, 3, 10
+            ).export(HttpRepositoryTestCase.pages(3));
+            MatcherAssert.assertThat(server.queries(), Matchers.is(2));
+            server.take();
+            final MkQuery query = server.take();
+            MatcherAssert.assertThat(query.method(), Matchers.is("POST"));
+            MatcherAssert.assertThat(
+                query.uri().getPath(), Matchers.is("/pages")
+            );
+            MatcherAssert.assertThat(
+                HttpRepositoryTestCase.header(query, "Content-Encoding"),
+                Matchers.is("gzip")
+            );
+            final JsonNode json = new ObjectMapper().readTree(
+                new GZIPInputStream(new ByteArrayInputStream(query.binary()))
+            );
+            MatcherAssert.assertThat(json.size(), Matchers.is(3));
+            MatcherAssert.assertThat(
+                json.get(2).path("url").asText(),
+                Matchers.is("http://www.test.com/page2")
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * HttpRepository accepts a 204 No Content reply.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void acceptsNoContent() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            server.next(new MkAnswer.Simple(204, ""));
+            new HttpRepository(
+                PooledHttpClient.create(1), server.home().toString(),
+                true, 3, 10
+            ).export(HttpRepositoryTestCase.pages(2));
+            MatcherAssert.assertThat(server.queries(), Matchers.is(1));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * HttpRepository does not retry after a 4xx status.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void failsWithoutRetryOnClientError() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            server.next(new MkAnswer.Simple(400, "bad"));
+            new HttpRepository(
+                PooledHttpClient.create(1), server.home().toString(),
+                false, 3, 10
+            ).export(HttpRepositoryTestCase.pages(1));
+            Assert.fail("DataExportException was expected.");
+        } catch (final DataExportException ex) {
+            MatcherAssert.assertThat(
+                ex.getMessage(), Matchers.containsString("status 400")
+            );
+            MatcherAssert.assertThat(server.queries(), Matchers.is(1));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * HttpRepository gives up after the last retry.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void failsAfterRetries() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            server.next(new MkAnswer.Simple(500, "error"))
+                .next(new MkAnswer.Simple(502, "error"))
+                .next(new MkAnswer.Simple(500, "error"));
+            new HttpRepository(
+                PooledHttpClient.create(1), server.home().toString(),
+                false, 2, 10
+            ).export(HttpRepositoryTestCase.pages(1));
+            Assert.fail("DataExportException was expected.");
+        } catch (final DataExportException ex) {
+            MatcherAssert.assertThat(server.queries(), Matchers.is(3));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * HttpRepository closes its HTTP client when it is closed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void closesClient() throws Exception {
+        final CloseableHttpClient client = Mockito.mock(
+            CloseableHttpClient.class
+        );
+        new HttpRepository(
+            client, "http://localhost/pages", true, 3, 10
+        ).close();
+        Mockito.verify(client).close();
+    }
+
+    /**
+     * HttpRepository, wrapped in an AsyncRepository, has as many batches
+     * in flight as there are exporters and pooled connections.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void exportsBatchesInFlight() throws Exception {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger most = new AtomicInteger();
+        final AtomicInteger received = new AtomicInteger();
+        final HttpServer server = HttpServer.create(
+            new InetSocketAddress("localhost", 0), 0
+        );
+        final ExecutorService threads = Executors.newFixedThreadPool(4);
+        server.setExecutor(threads);
+        server.createContext(
+            "/pages",
+            new HttpHandler() {
+                @Override
+                public void handle(final HttpExchange exchange)
+                    throws IOException {
+                    final int now = active.incrementAndGet();
+                    synchronized (most) {
+                        most.set(Math.max(most.get(), now));
+                    }
+                    try {
+                        Thread.sleep(200);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    final InputStream body = exchange.getRequestBody();
+                    while(body.read() != -1) {
+                        continue;
+                    }
+                    received.incrementAndGet();
+                    active.decrementAndGet();
+                    exchange.sendResponseHeaders(204, -1);
+                    exchange.close();
+                }
+            }
+        );
+        server.start();
+        final HttpRepository http = new HttpRepository(
+            "http://localhost:" + server.getAddress().getPort() + "/pages", 2
+        );
+        try {
+            final AsyncRepository repo = new AsyncRepository(http, 4, 2);
+            for(int batch = 0; batch < 4; ++batch) {
+                repo.export(HttpRepositoryTestCase.pages(2));
+            }
+            repo.close();
+            MatcherAssert.assertThat(received.get(), Matchers.is(4));
+            MatcherAssert.assertThat(most.get(), Matchers.is(2));
+        } finally {
+            http.close();
+            server.stop(0);
+            threads.shutdown();
+        }
+    }
+
+    /**
+     * Some pages.
+     * @param count Number of pages.
+     * @return Pages.
+     */
+    private static List<WebPage> pages(final int count) {
+        final List<WebPage> pages = new ArrayList<WebPage>();
+        for(int idx = 0; idx < count; ++idx) {
+            final WebPage page = new SnapshotWebPage();
+            page.setName("page" + idx);
+            page.setUrl("http://www.test.com/page" + idx);
+            page.setTitle("Page " + idx);
+            page.setTextContent("Text of page " + idx);
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    /**
+     * Value of a request header.
+     * @param query Request.
+     * @param name Name of the header, case insensitive.
+     * @return Value or null if the header is missing.
+     */
+    private static String header(final MkQuery query, final String name) {
+        String value = null;
+        for(final Map.Entry<String, List<String>> header
+            : query.headers().entrySet()) {
+            if(header.getKey().equalsIgnoreCase(name)) {
+                value = header.getValue().get(0);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.Arrays;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jsoup.Jsoup;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openqa.selenium.WebDriver;
+
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+
+/**
+ * Unit tests for {@link HybridBrowser}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class HybridBrowserTestCase {
+
+    /**
+     * HybridBrowser recognizes the pages generated by JavaScript.
+     */
+    @Test
+    public void recognizesDynamicPages() {
+        MatcherAssert.assertThat(
+            HybridBrowser.dynamic(
+                Jsoup.parse("<html><body><p>Static text</p></body></html>")
+            ),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            HybridBrowser.dynamic(
+                Jsoup.parse(
+                    "<body><script src='app.js'></script></body>"
+                )
+            ),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            HybridBrowser.dynamic(
+                Jsoup.parse(
+                    "<body><h1>Shop</h1><div id='root'></div></body>"
+                )
+            ),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            HybridBrowser.dynamic(
+                Jsoup.parse(
+                    "<body><h1>Shop</h1><div id='root'><p>SSR</p></div>"
+                    + "<noscript><iframe src='tracker'></iframe></noscript>"
+                    + "</body>"
+                )
+            ),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            HybridBrowser.dynamic(
+                Jsoup.parse(
+                    "<body><h1>Shop</h1><noscript>Enable JavaScript!"
+                    + "</noscript></body>"
+                )
+            ),
+            Matchers.is(true)
+        );
+        MatcherAssert.assertThat(
+            HybridBrowser.dynamic(Jsoup.parse("")), Matchers.is(false)
+        );
+    }
+
+    /**
+     * HybridBrowser renders only the pages which need it. It does not quit
+     * the shared HttpBrowser.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void rendersOnlyWhenNeeded() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().next(
+            new MkAnswer.Simple("<html><body>Static</body></html>")
+                .withHeader("Content-Type", "text/html")
+        ).next(
+            new MkAnswer.Simple("<html><body><div id='app'></div></body>")
+                .withHeader("Content-Type", "text/html")
+        ).next(
+            new MkAnswer.Simple("<html><body>Shared</body></html>")
+                .withHeader("Content-Type", "text/html")
+        ).start();
+        try {
+            final String home = server.home().toString();
+            final MockWebsite site = new MockWebsite();
+            site.page(home + "spa", home + "static");
+            site.page(home + "static");
+            site.page(home + "special");
+            final WebDriver driver = site.driver();
+            final HttpBrowser http = new HttpBrowser();
+            final HybridBrowser browser = new HybridBrowser(
+                http, driver,
+                new IgnoredPatterns(Arrays.asList("*/special"))
+            );
+            MatcherAssert.assertThat(
+                browser.snapshot(home + "static").getTextContent(),
+                Matchers.is("Static")
+            );
+            MatcherAssert.assertThat(
+                browser.snapshot(home + "spa").getLinks(),
+                Matchers.hasSize(1)
+            );
+            browser.snapshot(home + "special");
+            browser.quit();
+            MatcherAssert.assertThat(
+                site.visits(home + "static"), Matchers.is(0)
+            );
+            MatcherAssert.assertThat(
+                site.visits(home + "spa"), Matchers.is(1)
+            );
+            MatcherAssert.assertThat(
+                site.visits(home + "special"), Matchers.is(1)
+            );
+            MatcherAssert.assertThat(server.queries(), Matchers.is(2));
+            Mockito.verify(driver).quit();
+            MatcherAssert.assertThat(
+                http.snapshot(home + "shared").getTextContent(),
+                Matchers.is("Shared")
+            );
+            http.quit();
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -63,4 +63,54 @@ public class IgnoredPatternsTestCase {
         assertFalse(patterns.contains("www.test.com/p/page.html"));
 
     }
+
+    /**
+     * IgnoredPatterns matches exact patterns ignoring case, regexes which
+     * cannot be grouped and patterns made only of asterisks.
+     */
+    @Test
+    public void containsCompiledPatterns() {
+        IgnoredPatterns patterns = new IgnoredPatterns(
+                                            Arrays.asList(
+                                                "HTTP://WWW.TEST.COM/Page.html",
+                                                "www.test.com/(a+)/\\1",
+                                                "(?i)www\\.test\\.com/upper",
+                                                "www.test.com/*/x*/y",
+                                                "invalid[regex"
+                                            )
+                                   );
+        assertTrue(patterns.contains("http://www.test.com/page.HTML"));
+        assertTrue(patterns.contains("www.test.com/aa/aa"));
+        assertTrue(patterns.contains("WWW.TEST.COM/UPPER"));
+        assertTrue(patterns.contains("www.test.com/p/x/y"));
+        assertTrue(patterns.contains("invalid[regex"));
+        assertFalse(patterns.contains("www.test.com/aa/a"));
+        assertFalse(patterns.contains("www.test.com/y/x"));
+        assertFalse(patterns.contains("invalid[regex2"));
+        assertTrue(
+            new IgnoredPatterns(Arrays.asList(" * ")).contains("any")
+        );
+        assertFalse(new IgnoredPatterns().contains("any"));
+    }
+
+    /**
+     * IgnoredPatterns can cache its decisions, evicting the least
+     * recently used ones.
+     */
+    @Test
+    public void cachesDecisions() {
+        IgnoredPatterns patterns = new IgnoredPatterns(
+            Arrays.asList("*.js"), 2
+        );
+        assertTrue(patterns.contains("www.test.com/a.js"));
+        assertFalse(patterns.contains("www.test.com/a.html"));
+        assertTrue(patterns.contains("www.test.com/a.js"));
+        assertFalse(patterns.contains("www.test.com/a.html"));
+        assertEquals(2, patterns.hits());
+        assertEquals(2, patterns.misses());
+        assertFalse(patterns.contains("www.test.com/b.html"));
+        assertTrue(patterns.contains("www.test.com/a.js"));
+        assertEquals(4, patterns.misses());
+        assertEquals(0, new IgnoredPatterns().hits());
+    }
 }
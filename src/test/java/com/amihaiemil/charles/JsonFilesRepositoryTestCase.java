@@ -24,13 +24,21 @@
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */package com.amihaiemil.charles;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Scanner;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -40,6 +48,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * @author Mihai Andronache (amihaiemil@gmail.com)
  */
 public class JsonFilesRepositoryTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
     
     @Test
     public void exportsPagesToFiles() throws Exception {
@@ -65,4 +79,141 @@ public class JsonFilesRepositoryTestCase {
         assertTrue(readPage.getUrl().equals(page.getUrl()));
         
     }
+
+    /**
+     * JsonFilesRepository can write compact json, replacing the existing
+     * file and leaving no temporary file behind.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void exportsCompactJson() throws Exception {
+        final File dir = this.folder.getRoot();
+        final File json = new File(dir, "page.json");
+        final WebPage page = new SnapshotWebPage();
+        page.setName("page");
+        page.setUrl("http://amihaiemil.com/page");
+        page.setTitle("Old");
+        final Repository repo = new JsonFilesRepository(dir.getPath(), true);
+        repo.export(Arrays.asList(page));
+        page.setTitle("New");
+        repo.export(Arrays.asList(page));
+        final Scanner scanner = new Scanner(json, "UTF-8");
+        try {
+            final String content = scanner.useDelimiter("\\A").next();
+            assertFalse(content.contains("\n"));
+            assertTrue(
+                new ObjectMapper().readValue(content, SnapshotWebPage.class)
+                    .getTitle().equals("New")
+            );
+        } finally {
+            scanner.close();
+        }
+        assertTrue(dir.list().length == 1);
+    }
+
+    /**
+     * JsonFilesRepository can write the pages in parallel and reports
+     * all the pages which could not be written.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void exportsInParallel() throws Exception {
+        final File dir = this.folder.getRoot();
+        final List<WebPage> pages = new ArrayList<WebPage>();
+        for(int idx = 0; idx < 20; ++idx) {
+            final WebPage page = new SnapshotWebPage();
+            page.setName("page" + idx);
+            page.setUrl("http://amihaiemil.com/page" + idx);
+            pages.add(page);
+        }
+        final WebPage missing = new SnapshotWebPage();
+        missing.setName("missing/dir");
+        missing.setUrl("http://amihaiemil.com/missing/dir");
+        pages.add(missing);
+        try {
+            new JsonFilesRepository(dir.getPath(), true, 4).export(pages);
+            fail("DataExportException was expected.");
+        } catch (final DataExportException ex) {
+            assertTrue(
+                ex.getMessage().contains("[http://amihaiemil.com/missing/dir]")
+            );
+        }
+        for(int idx = 0; idx < 20; ++idx) {
+            assertTrue(new File(dir, "page" + idx + ".json").exists());
+        }
+        assertTrue(dir.list().length == 20);
+        assertFalse(JsonFilesRepositoryTestCase.writing());
+    }
+
+    /**
+     * Are any writer threads still alive? Waits up to 5 seconds for
+     * them to stop.
+     * @return True if writer threads are still alive.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private static boolean writing() throws InterruptedException {
+        boolean alive = true;
+        for(int attempt = 0; alive && attempt < 50; ++attempt) {
+            alive = false;
+            for(final Thread thread : Thread.getAllStackTraces().keySet()) {
+                if("charles-json-files".equals(thread.getName())
+                    && thread.isAlive()) {
+                    alive = true;
+                }
+            }
+            if(alive) {
+                Thread.sleep(100);
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * JsonFilesRepository deletes the temporary file of a page which
+     * could not be written.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void deletesTemporaryFileOnFailure() throws Exception {
+        final File dir = this.folder.getRoot();
+        final WebPage page = Mockito.mock(WebPage.class);
+        Mockito.when(page.getName()).thenReturn("broken");
+        Mockito.when(page.getUrl()).thenReturn("http://amihaiemil.com/broken");
+        Mockito.when(page.getTitle()).thenThrow(
+            new IllegalStateException("Broken page!")
+        );
+        try {
+            new JsonFilesRepository(dir.getPath(), true)
+                .export(Arrays.asList(page));
+            fail("DataExportException was expected.");
+        } catch (final DataExportException ex) {
+            assertTrue(dir.list().length == 0);
+        }
+    }
+
+    /**
+     * JsonFilesRepository can compress the json files.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void exportsCompressedJson() throws Exception {
+        final File dir = this.folder.getRoot();
+        final WebPage page = new SnapshotWebPage();
+        page.setName("page");
+        page.setUrl("http://amihaiemil.com/page");
+        page.setTitle("Compressed");
+        new JsonFilesRepository(dir.getPath(), false, 1, Compression.GZIP)
+            .export(Arrays.asList(page));
+        final InputStream json = Compression.GZIP.decompress(
+            new FileInputStream(new File(dir, "page.json.gz"))
+        );
+        try {
+            assertTrue(
+                new ObjectMapper().readValue(json, SnapshotWebPage.class)
+                    .getTitle().equals("Compressed")
+            );
+        } finally {
+            json.close();
+        }
+    }
 }
@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for {@link JsonLinesRepository}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class JsonLinesRepositoryTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * JsonLinesRepository rolls the segments and indexes every page,
+     * also when it is recreated over the same directory.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void appendsIndexedSegments() throws Exception {
+        final File dir = this.folder.getRoot();
+        new JsonLinesRepository(dir.getPath(), 300).export(
+            JsonLinesRepositoryTestCase.pages(0, 5)
+        );
+        new JsonLinesRepository(
+            dir.getPath(), 300, JsonLinesRepository.Sync.PAGE
+        ).export(JsonLinesRepositoryTestCase.pages(5, 10));
+        MatcherAssert.assertThat(
+            new File(dir, "pages-00002.jsonl").exists(), Matchers.is(true)
+        );
+        final List<String> urls = JsonLinesRepositoryTestCase.read(
+            dir, Compression.NONE
+        );
+        MatcherAssert.assertThat(urls, Matchers.hasSize(10));
+        MatcherAssert.assertThat(
+            urls.get(9), Matchers.is("http://www.test.com/page9")
+        );
+    }
+
+    /**
+     * JsonLinesRepository can compress the segments, one frame per batch.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void compressesSegments() throws Exception {
+        for(final Compression compression : Compression.values()) {
+            final File dir = this.folder.newFolder(compression.name());
+            final Repository repo = new JsonLinesRepository(
+                dir.getPath(), 1024, JsonLinesRepository.Sync.NEVER,
+                compression
+            );
+            for(int batch = 0; batch < 10; ++batch) {
+                repo.export(
+                    JsonLinesRepositoryTestCase.pages(batch * 5, batch * 5 + 5)
+                );
+            }
+            MatcherAssert.assertThat(
+                new File(
+                    dir, "pages-00001.jsonl" + compression.extension()
+                ).exists(),
+                Matchers.is(true)
+            );
+            final List<String> urls = JsonLinesRepositoryTestCase.read(
+                dir, compression
+            );
+            MatcherAssert.assertThat(urls, Matchers.hasSize(50));
+            MatcherAssert.assertThat(
+                urls.get(49), Matchers.is("http://www.test.com/page49")
+            );
+        }
+    }
+
+    /**
+     * JsonLinesRepository continues the last segment of an existing
+     * directory, also when the segments are compressed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void continuesLastSegment() throws Exception {
+        for(final Compression compression : Compression.values()) {
+            final File dir = this.folder.newFolder(compression.name());
+            for(int run = 0; run < 3; ++run) {
+                new JsonLinesRepository(
+                    dir.getPath(), 1024 * 1024, JsonLinesRepository.Sync.BATCH,
+                    compression
+                ).export(
+                    JsonLinesRepositoryTestCase.pages(run * 3, run * 3 + 3)
+                );
+            }
+            MatcherAssert.assertThat(
+                dir.list(),
+                Matchers.arrayContainingInAnyOrder(
+                    "index.tsv", "pages-00000.jsonl" + compression.extension()
+                )
+            );
+            final List<String> urls = JsonLinesRepositoryTestCase.read(
+                dir, compression
+            );
+            MatcherAssert.assertThat(urls, Matchers.hasSize(9));
+            MatcherAssert.assertThat(
+                urls.get(8), Matchers.is("http://www.test.com/page8")
+            );
+        }
+    }
+
+    /**
+     * Read every page through the index.
+     * @param dir Directory of the segments.
+     * @param compression Compression of the segments.
+     * @return Urls of the pages read, in the order of the index.
+     * @throws Exception If something goes wrong.
+     */
+    private static List<String> read(
+        final File dir, final Compression compression
+    ) throws Exception {
+        final List<String> urls = new ArrayList<String>();
+        final Scanner index = new Scanner(
+            new File(dir, "index.tsv"), "UTF-8"
+        );
+        try {
+            while(index.hasNextLine()) {
+                final String[] entry = index.nextLine().split("\t");
+                final FileInputStream segment = new FileInputStream(
+                    new File(
+                        dir,
+                        String.format(
+                            "pages-%05d.jsonl", Integer.parseInt(entry[0])
+                        ) + compression.extension()
+                    )
+                );
+                final byte[] json = new byte[Integer.parseInt(entry[3])];
+                try {
+                    JsonLinesRepositoryTestCase.skip(
+                        segment, Long.parseLong(entry[1])
+                    );
+                    final DataInputStream frame = new DataInputStream(
+                        compression.decompress(segment)
+                    );
+                    JsonLinesRepositoryTestCase.skip(
+                        frame, Long.parseLong(entry[2])
+                    );
+                    frame.readFully(json);
+                } finally {
+                    segment.close();
+                }
+                final WebPage page = new ObjectMapper().readValue(
+                    json, SnapshotWebPage.class
+                );
+                MatcherAssert.assertThat(page.getUrl(), Matchers.is(entry[4]));
+                urls.add(page.getUrl());
+            }
+        } finally {
+            index.close();
+        }
+        return urls;
+    }
+
+    /**
+     * Skip exactly the given number of bytes.
+     * @param in Stream.
+     * @param bytes Number of bytes.
+     * @throws Exception If something goes wrong.
+     */
+    private static void skip(final InputStream in, final long bytes)
+        throws Exception {
+        long left = bytes;
+        while(left > 0) {
+            final long skipped = in.skip(left);
+            if(skipped <= 0) {
+                throw new IllegalStateException("Unexpected end of stream");
+            }
+            left = left - skipped;
+        }
+    }
+
+    /**
+     * Some pages.
+     * @param from Number of the first page.
+     * @param to Number after the last page.
+     * @return Pages.
+     */
+    private static List<WebPage> pages(final int from, final int to) {
+        final List<WebPage> pages = new ArrayList<WebPage>();
+        for(int idx = from; idx < to; ++idx) {
+            final WebPage page = new SnapshotWebPage();
+            page.setName("page" + idx);
+            page.setUrl("http://www.test.com/page" + idx);
+            page.setTitle("Page " + idx);
+            page.setTextContent("Text of page " + idx);
+            pages.add(page);
+        }
+        return pages;
+    }
+}
@@ -26,10 +26,19 @@
  */
 package com.amihaiemil.charles;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
 import org.mockito.Mockito;
 
 /**
@@ -101,4 +110,99 @@ public final class LiveWebPageTestCase {
             page.getName(), Matchers.equalTo("test")
         );
     }
+
+    /**
+     * LiveWebPage takes the snapshot with one single script call, if the
+     * driver can execute JavaScript.
+     */
+    @Test
+    public void snapshotsWithOneScript() {
+        WebDriver driver = Mockito.mock(
+            WebDriver.class,
+            Mockito.withSettings().extraInterfaces(JavascriptExecutor.class)
+        );
+        final Map<String, Object> result = new HashMap<String, Object>();
+        result.put("url", "http://www.test.com/page.html");
+        result.put("title", "Title");
+        result.put("text", "Some text");
+        final List<Map<String, Object>> anchors =
+            new ArrayList<Map<String, Object>>();
+        final Map<String, Object> inside = new HashMap<String, Object>();
+        inside.put("text", "Inside");
+        inside.put("href", "http://www.test.com/other.html");
+        anchors.add(inside);
+        final Map<String, Object> outside = new HashMap<String, Object>();
+        outside.put("text", "Outside");
+        outside.put("href", "http://www.google.com");
+        anchors.add(outside);
+        result.put("links", anchors);
+        Mockito.when(
+            ((JavascriptExecutor) driver).executeScript(Mockito.anyString())
+        ).thenReturn(result);
+        WebPage page = new LiveWebPage(driver).snapshot();
+        MatcherAssert.assertThat(page.getName(), Matchers.equalTo("page.html"));
+        MatcherAssert.assertThat(page.getTitle(), Matchers.equalTo("Title"));
+        MatcherAssert.assertThat(
+            page.getTextContent(), Matchers.equalTo("Some text")
+        );
+        MatcherAssert.assertThat(
+            page.getLinks(),
+            Matchers.contains(new Link("", "http://www.test.com/other.html"))
+        );
+        Mockito.verify(driver, Mockito.never()).getCurrentUrl();
+        Mockito.verify(driver, Mockito.never())
+            .findElements(Mockito.any(By.class));
+    }
+
+    /**
+     * LiveWebPage takes a missing title or text returned by the snapshot
+     * script as empty, not as the text "null".
+     */
+    @Test
+    public void snapshotsMissingValuesAsEmpty() {
+        WebDriver driver = Mockito.mock(
+            WebDriver.class,
+            Mockito.withSettings().extraInterfaces(JavascriptExecutor.class)
+        );
+        final Map<String, Object> result = new HashMap<String, Object>();
+        result.put("url", "http://www.test.com/page.html");
+        result.put("title", null);
+        result.put("text", null);
+        result.put("links", new ArrayList<Object>());
+        Mockito.when(
+            ((JavascriptExecutor) driver).executeScript(Mockito.anyString())
+        ).thenReturn(result);
+        WebPage page = new LiveWebPage(driver).snapshot();
+        MatcherAssert.assertThat(page.getTitle(), Matchers.equalTo(""));
+        MatcherAssert.assertThat(page.getTextContent(), Matchers.equalTo(""));
+    }
+
+    /**
+     * LiveWebPage reads the page element by element if the snapshot
+     * script fails.
+     */
+    @Test
+    public void snapshotsWithoutScript() {
+        WebDriver driver = Mockito.mock(
+            WebDriver.class,
+            Mockito.withSettings().extraInterfaces(JavascriptExecutor.class)
+        );
+        Mockito.when(
+            ((JavascriptExecutor) driver).executeScript(Mockito.anyString())
+        ).thenThrow(new WebDriverException("JavaScript is disabled"));
+        Mockito.when(driver.getCurrentUrl())
+            .thenReturn("http://www.test.com/page.html");
+        Mockito.when(driver.getTitle()).thenReturn("Title");
+        WebElement body = Mockito.mock(WebElement.class);
+        Mockito.when(body.getText()).thenReturn("Some text");
+        Mockito.when(driver.findElement(Mockito.any(By.class)))
+            .thenReturn(body);
+        Mockito.when(driver.findElements(Mockito.any(By.class)))
+            .thenReturn(new ArrayList<WebElement>());
+        WebPage page = new LiveWebPage(driver).snapshot();
+        MatcherAssert.assertThat(page.getTitle(), Matchers.equalTo("Title"));
+        MatcherAssert.assertThat(
+            page.getTextContent(), Matchers.equalTo("Some text")
+        );
+    }
 }
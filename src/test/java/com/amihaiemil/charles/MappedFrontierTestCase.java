@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.File;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MappedFrontier}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class MappedFrontierTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * MappedFrontier returns the links in FIFO order, across many
+     * segments, and deletes the segments it read.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void returnsLinksInFifoOrder() throws Exception {
+        final File dir = this.folder.newFolder();
+        final Frontier frontier = new MappedFrontier(
+            dir.getAbsolutePath(), 64
+        );
+        MatcherAssert.assertThat(frontier.isEmpty(), Matchers.is(true));
+        MatcherAssert.assertThat(frontier.next(), Matchers.nullValue());
+        int read = 0;
+        for(int idx = 0; idx < 100; ++idx) {
+            frontier.add(
+                new Link("link ă" + idx, "http://www.test.com/" + idx), idx
+            );
+            if(idx % 3 == 0) {
+                final Link link = frontier.next();
+                MatcherAssert.assertThat(
+                    link.getHref(), Matchers.equalTo("http://www.test.com/" + read)
+                );
+                MatcherAssert.assertThat(
+                    link.getText(), Matchers.equalTo("link ă" + read)
+                );
+                MatcherAssert.assertThat(frontier.depth(), Matchers.is(read));
+                read = read + 1;
+            }
+        }
+        while(!frontier.isEmpty()) {
+            MatcherAssert.assertThat(
+                frontier.next().getHref(),
+                Matchers.equalTo("http://www.test.com/" + read)
+            );
+            read = read + 1;
+        }
+        MatcherAssert.assertThat(read, Matchers.is(100));
+        MatcherAssert.assertThat(dir.listFiles().length, Matchers.is(1));
+    }
+
+    /**
+     * MappedFrontier can hold links bigger than a segment.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void holdsBigLinks() throws Exception {
+        final Frontier frontier = new MappedFrontier(
+            this.folder.newFolder().getAbsolutePath(), 16
+        );
+        final StringBuilder text = new StringBuilder();
+        for(int idx = 0; idx < 100; ++idx) {
+            text.append("text");
+        }
+        frontier.add(new Link("small", "http://www.test.com/a"), 1);
+        frontier.add(new Link(text.toString(), "http://www.test.com/b"), 2);
+        frontier.add(new Link("small", "http://www.test.com/c"), 3);
+        MatcherAssert.assertThat(
+            frontier.next().getHref(), Matchers.equalTo("http://www.test.com/a")
+        );
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo(text.toString())
+        );
+        MatcherAssert.assertThat(
+            frontier.next().getHref(), Matchers.equalTo("http://www.test.com/c")
+        );
+        MatcherAssert.assertThat(frontier.isEmpty(), Matchers.is(true));
+    }
+}
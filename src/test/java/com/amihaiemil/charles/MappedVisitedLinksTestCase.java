@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MappedVisitedLinks}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class MappedVisitedLinksTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * MappedVisitedLinks remembers the links, growing as needed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void remembersLinks() throws Exception {
+        final VisitedLinks visited = new MappedVisitedLinks(
+            this.folder.newFolder().getAbsolutePath(), 4
+        );
+        for(int idx = 0; idx < 1000; ++idx) {
+            MatcherAssert.assertThat(
+                visited.add(new Link("", "http://www.test.com/" + idx)),
+                Matchers.is(true)
+            );
+        }
+        for(int idx = 0; idx < 1000; ++idx) {
+            MatcherAssert.assertThat(
+                visited.contains(new Link("", "http://www.test.com/" + idx)),
+                Matchers.is(true)
+            );
+        }
+        MatcherAssert.assertThat(
+            visited.add(new Link("", "http://www.test.com/7/#top")),
+            Matchers.is(false)
+        );
+        MatcherAssert.assertThat(
+            visited.contains(new Link("", "http://www.test.com/1000")),
+            Matchers.is(false)
+        );
+    }
+
+    /**
+     * MappedVisitedLinks can be cleared and reused.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void clearsLinks() throws Exception {
+        final VisitedLinks visited = new MappedVisitedLinks(
+            this.folder.newFolder().getAbsolutePath()
+        );
+        final Link link = new Link("", "http://www.test.com/page.html");
+        visited.add(link);
+        visited.clear();
+        MatcherAssert.assertThat(visited.contains(link), Matchers.is(false));
+        MatcherAssert.assertThat(visited.add(link), Matchers.is(true));
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Fake website, served by mocked WebDrivers. Used in unit tests.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+final class MockWebsite {
+
+    /**
+     * Pages of the site (url, urls of the linked pages).
+     */
+    private final Map<String, List<String>> pages;
+
+    /**
+     * How many times each page was opened, by any driver.
+     */
+    private final Map<String, AtomicInteger> visits;
+
+    /**
+     * Ctor.
+     */
+    MockWebsite() {
+        this.pages = new HashMap<String, List<String>>();
+        this.visits = new ConcurrentHashMap<String, AtomicInteger>();
+    }
+
+    /**
+     * Add a page to the site.
+     * @param url Url of the page.
+     * @param links Urls the page links to.
+     * @return This site.
+     */
+    MockWebsite page(final String url, final String... links) {
+        final List<String> hrefs = new ArrayList<String>();
+        for(final String link : links) {
+            hrefs.add(link);
+        }
+        this.pages.put(url, hrefs);
+        this.visits.put(url, new AtomicInteger());
+        return this;
+    }
+
+    /**
+     * How many times was the page opened?
+     * @param url Url of the page.
+     * @return Number of visits.
+     */
+    int visits(final String url) {
+        return this.visits.get(url).get();
+    }
+
+    /**
+     * A new WebDriver browsing this site. Each driver keeps its own
+     * current page, so it must be used by one thread at a time.
+     * @return Mocked WebDriver.
+     */
+    WebDriver driver() {
+        final Map<String, List<WebElement>> anchors =
+            new HashMap<String, List<WebElement>>();
+        final Map<String, WebElement> bodies =
+            new HashMap<String, WebElement>();
+        for(final Map.Entry<String, List<String>> page
+            : this.pages.entrySet()) {
+            final List<WebElement> elements = new ArrayList<WebElement>();
+            for(final String href : page.getValue()) {
+                final WebElement anchor = Mockito.mock(WebElement.class);
+                Mockito.when(anchor.getText()).thenReturn("link to " + href);
+                Mockito.when(anchor.getAttribute("href")).thenReturn(href);
+                elements.add(anchor);
+            }
+            anchors.put(page.getKey(), elements);
+            final WebElement body = Mockito.mock(WebElement.class);
+            Mockito.when(body.getText())
+                .thenReturn("text of " + page.getKey());
+            bodies.put(page.getKey(), body);
+        }
+        final String[] current = new String[1];
+        final WebDriver driver = Mockito.mock(WebDriver.class);
+        Mockito.doAnswer(
+            new Answer<Void>() {
+                @Override
+                public Void answer(final InvocationOnMock inv) {
+                    String url = (String) inv.getArguments()[0];
+                    if(url.contains("#")) {
+                        url = url.substring(0, url.indexOf('#'));
+                    }
+                    if(url.endsWith("/")) {
+                        url = url.substring(0, url.length() - 1);
+                    }
+                    current[0] = url;
+                    final AtomicInteger count = MockWebsite.this.visits
+                        .get(url);
+                    if(count != null) {
+                        count.incrementAndGet();
+                    }
+                    return null;
+                }
+            }
+        ).when(driver).get(Mockito.anyString());
+        Mockito.when(driver.getCurrentUrl()).thenAnswer(
+            new Answer<String>() {
+                @Override
+                public String answer(final InvocationOnMock inv) {
+                    return current[0];
+                }
+            }
+        );
+        Mockito.when(driver.getTitle()).thenAnswer(
+            new Answer<String>() {
+                @Override
+                public String answer(final InvocationOnMock inv) {
+                    return "title of " + current[0];
+                }
+            }
+        );
+        Mockito.when(driver.findElement(Mockito.any(By.class))).thenAnswer(
+            new Answer<WebElement>() {
+                @Override
+                public WebElement answer(final InvocationOnMock inv) {
+                    return bodies.get(current[0]);
+                }
+            }
+        );
+        Mockito.when(driver.findElements(Mockito.any(By.class))).thenAnswer(
+            new Answer<List<WebElement>>() {
+                @Override
+                public List<WebElement> answer(final InvocationOnMock inv) {
+                    return anchors.get(current[0]);
+                }
+            }
+        );
+        return driver;
+    }
+}
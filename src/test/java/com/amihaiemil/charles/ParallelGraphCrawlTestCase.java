@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Unit tests for {@link ParallelGraphCrawl}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class ParallelGraphCrawlTestCase {
+
+    /**
+     * ParallelGraphCrawl crawls every page of the site exactly once,
+     * exporting them all.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void crawlsEachPageOnce() throws Exception {
+        final MockWebsite site = this.site();
+        final InMemoryRepository repo = new InMemoryRepository();
+        final List<WebDriver> drivers = new ArrayList<WebDriver>();
+        for(int idx = 0; idx < 4; ++idx) {
+            drivers.add(site.driver());
+        }
+        new ParallelGraphCrawl(
+            "http://www.test.com", drivers, new IgnoredPatterns(), repo, 2
+        ).crawl();
+        final Set<String> urls = new HashSet<String>();
+        for(final WebPage page : repo.getCrawledPages()) {
+            MatcherAssert.assertThat(
+                "Page crawled 2 times!", urls.add(page.getUrl()),
+                Matchers.is(true)
+            );
+        }
+        MatcherAssert.assertThat(urls, Matchers.hasSize(6));
+        for(final String url : urls) {
+            MatcherAssert.assertThat(site.visits(url), Matchers.is(1));
+        }
+        for(final WebDriver driver : drivers) {
+            Mockito.verify(driver).quit();
+        }
+    }
+
+    /**
+     * ParallelGraphCrawl does not crawl the ignored pages.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void skipsIgnoredPages() throws Exception {
+        final MockWebsite site = this.site();
+        final InMemoryRepository repo = new InMemoryRepository();
+        new ParallelGraphCrawl(
+            "http://www.test.com",
+            Arrays.asList(site.driver(), site.driver()),
+            new IgnoredPatterns(Arrays.asList("http://www.test.com/b*")),
+            repo
+        ).crawl();
+        MatcherAssert.assertThat(repo.getCrawledPages(), Matchers.hasSize(4));
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/b.html"), Matchers.is(0)
+        );
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/b/c.html"), Matchers.is(0)
+        );
+    }
+
+    /**
+     * ParallelGraphCrawl rethrows the exception of a failed export.
+     * @throws Exception If something goes wrong.
+     */
+    @Test(expected = DataExportException.class)
+    public void rethrowsExportFailure() throws Exception {
+        final MockWebsite site = this.site();
+        final Repository repo = Mockito.mock(Repository.class);
+        Mockito.doThrow(new DataExportException("export failed"))
+            .when(repo).export(Mockito.anyListOf(WebPage.class));
+        new ParallelGraphCrawl(
+            "http://www.test.com",
+            Arrays.asList(site.driver(), site.driver()),
+            new IgnoredPatterns(), repo, 1
+        ).crawl();
+    }
+
+    /**
+     * A small test site.
+     * @return MockWebsite.
+     */
+    private MockWebsite site() {
+        return new MockWebsite()
+            .page(
+                "http://www.test.com",
+                "http://www.test.com/a.html", "http://www.test.com/b.html",
+                "http://www.other.com/external.html"
+            )
+            .page(
+                "http://www.test.com/a.html",
+                "http://www.test.com", "http://www.test.com/a/c.html",
+                "http://www.test.com/b.html#section"
+            )
+            .page(
+                "http://www.test.com/b.html",
+                "http://www.test.com/a.html", "http://www.test.com/b/c.html"
+            )
+            .page(
+                "http://www.test.com/a/c.html",
+                "http://www.test.com/a/d.html/"
+            )
+            .page("http://www.test.com/a/d.html", "http://www.test.com")
+            .page("http://www.test.com/b/c.html", "http://www.test.com/a.html");
+    }
+}
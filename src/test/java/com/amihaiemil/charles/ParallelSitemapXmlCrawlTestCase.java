@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openqa.selenium.WebDriver;
+
+import com.amihaiemil.charles.sitemap.SitemapXmlLocation;
+
+/**
+ * Unit tests for {@link ParallelSitemapXmlCrawl}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class ParallelSitemapXmlCrawlTestCase {
+
+    /**
+     * ParallelSitemapXmlCrawl crawls every url of the sitemap exactly once,
+     * except the ignored ones.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void crawlsEachUrlOnce() throws Exception {
+        final MockWebsite site = new MockWebsite();
+        final StringBuilder xml = new StringBuilder(
+            "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+        );
+        for(int idx = 0; idx < 23; ++idx) {
+            site.page("http://www.test.com/page" + idx);
+            xml.append("<url><loc>http://www.test.com/page")
+                .append(idx).append("</loc></url>");
+        }
+        xml.append("<url><loc>http://www.test.com/page.js</loc></url>")
+            .append("</urlset>");
+        final List<WebDriver> drivers = new ArrayList<WebDriver>();
+        for(int idx = 0; idx < 3; ++idx) {
+            drivers.add(site.driver());
+        }
+        final InMemoryRepository repo = new InMemoryRepository();
+        new ParallelSitemapXmlCrawl(
+            drivers, this.sitemap(xml.toString()),
+            new IgnoredPatterns(Arrays.asList("*.js")), repo, 4
+        ).crawl();
+        final Set<String> urls = new HashSet<String>();
+        for(final WebPage page : repo.getCrawledPages()) {
+            urls.add(page.getUrl());
+        }
+        MatcherAssert.assertThat(urls, Matchers.hasSize(23));
+        MatcherAssert.assertThat(
+            repo.getCrawledPages(), Matchers.hasSize(23)
+        );
+        for(int idx = 0; idx < 23; ++idx) {
+            MatcherAssert.assertThat(
+                site.visits("http://www.test.com/page" + idx), Matchers.is(1)
+            );
+        }
+        for(final WebDriver driver : drivers) {
+            Mockito.verify(driver).quit();
+        }
+    }
+
+    /**
+     * Sitemap location from a String.
+     * @param xml Content of the sitemap.
+     * @return SitemapXmlLocation.
+     */
+    private SitemapXmlLocation sitemap(final String xml) {
+        return new SitemapXmlLocation() {
+            @Override
+            public InputStream getStream() {
+                return new ByteArrayInputStream(xml.getBytes());
+            }
+            @Override
+            public String origin() {
+                return null;
+            }
+        };
+    }
+}
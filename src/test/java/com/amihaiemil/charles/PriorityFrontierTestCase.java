@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.ByteArrayInputStream;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import com.amihaiemil.charles.sitemap.SitemapXml;
+
+/**
+ * Unit tests for {@link PriorityFrontier}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class PriorityFrontierTestCase {
+
+    /**
+     * PriorityFrontier returns the shallow links first, by default.
+     */
+    @Test
+    public void returnsShallowLinksFirst() {
+        final Frontier frontier = new PriorityFrontier();
+        frontier.add(new Link("deep", "http://www.test.com/a/b/c.html"), 1);
+        frontier.add(new Link("first", "http://www.test.com/a.html"), 2);
+        frontier.add(new Link("mid", "http://www.test.com/a/b.html?x=/y"), 3);
+        frontier.add(new Link("second", "http://www.test.com/b.html/"), 4);
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("first")
+        );
+        MatcherAssert.assertThat(frontier.depth(), Matchers.is(2));
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("second")
+        );
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("mid")
+        );
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("deep")
+        );
+        MatcherAssert.assertThat(frontier.isEmpty(), Matchers.is(true));
+    }
+
+    /**
+     * PriorityFrontier can order the links by their sitemap priority.
+     */
+    @Test
+    public void returnsSitemapPriorityFirst() {
+        final String xml = "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+            + "<url><loc>http://www.test.com/low.html</loc><priority>0.1</priority></url>"
+            + "<url><loc>http://www.test.com/a/b/high.html</loc><priority>0.9</priority></url>"
+            + "</urlset>";
+        final Frontier frontier = new PriorityFrontier(
+            new SitemapPriorityOrder(
+                new SitemapXml(
+                    new ByteArrayInputStream(xml.getBytes())
+                ).read().getUrls()
+            )
+        );
+        frontier.add(new Link("low", "http://www.test.com/low.html"), 1);
+        frontier.add(new Link("unknown", "http://www.test.com/x/y.html"), 1);
+        frontier.add(new Link("default", "http://www.test.com/x.html"), 1);
+        frontier.add(new Link("high", "http://www.test.com/a/b/high.html"), 1);
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("high")
+        );
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("default")
+        );
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("unknown")
+        );
+        MatcherAssert.assertThat(
+            frontier.next().getText(), Matchers.equalTo("low")
+        );
+    }
+}
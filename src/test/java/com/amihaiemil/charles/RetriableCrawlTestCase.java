@@ -25,7 +25,16 @@
  */package com.amihaiemil.charles;
 
 import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
 /**
@@ -37,6 +46,12 @@ import org.mockito.Mockito;
  */
 public final class RetriableCrawlTestCase {
 
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * RetriableCrawl works from the first trial.
      * @throws Exception If something goes wrong.
@@ -126,4 +141,60 @@ public final class RetriableCrawlTestCase {
             Mockito.verify(mc, Mockito.times(3)).crawl();
         }
     }
+
+    /**
+     * RetriableCrawl resumes a GraphCrawl with a journal from its last
+     * checkpoint.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void resumesGraphCrawlFromCheckpoint() throws Exception {
+        final MockWebsite site = new MockWebsite()
+            .page("http://www.test.com", "http://www.test.com/a",
+                "http://www.test.com/b")
+            .page("http://www.test.com/a", "http://www.test.com/c")
+            .page("http://www.test.com/b", "http://www.test.com")
+            .page("http://www.test.com/c");
+        final InMemoryRepository memory = new InMemoryRepository();
+        final AtomicBoolean failed = new AtomicBoolean();
+        final Repository repo = new Repository() {
+            @Override
+            public void export(final List<WebPage> pages)
+                throws DataExportException {
+                for(final WebPage page : pages) {
+                    if(page.getUrl().endsWith("/c")
+                        && failed.compareAndSet(false, true)) {
+                        throw new IllegalStateException("Export failed!");
+                    }
+                }
+                memory.export(pages);
+            }
+            @Override
+            public void flush() {
+                //nothing to wait for
+            }
+        };
+        final File file = this.folder.newFile("journal.txt");
+        new RetriableCrawl(
+            new GraphCrawl(
+                "http://www.test.com", site.driver(), new IgnoredPatterns(),
+                repo, 1, new BreadthFirstFrontier(),
+                new InMemoryVisitedLinks(), new FileCrawlJournal(file)
+            )
+        ).crawl();
+        MatcherAssert.assertThat(memory.getCrawledPages(), Matchers.hasSize(4));
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com"), Matchers.is(1)
+        );
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/a"), Matchers.is(1)
+        );
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/b"), Matchers.is(1)
+        );
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/c"), Matchers.is(2)
+        );
+        MatcherAssert.assertThat(file.exists(), Matchers.is(false));
+    }
 }
@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.List;
+import java.util.Map;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+import com.jcabi.http.mock.MkQuery;
+
+/**
+ * Unit tests for {@link RevalidatingBrowser}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class RevalidatingBrowserTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * RevalidatingBrowser reuses the previous snapshot if the server
+     * answers 304, even after it is recreated with the same directory.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void reusesNotModifiedPage() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            final String url = server.home().toString() + "page";
+            server.next(
+                new MkAnswer.Simple("").withHeader("ETag", "\"v1\"")
+            ).next(
+                new MkAnswer.Simple(304, "")
+            );
+            final Browser origin = RevalidatingBrowserTestCase.origin(url);
+            new RevalidatingBrowser(
+                origin, PooledHttpClient.create(1), this.folder.getRoot()
+            ).snapshot(url);
+            final WebPage page = new RevalidatingBrowser(
+                origin, PooledHttpClient.create(1), this.folder.getRoot()
+            ).snapshot(url);
+            Mockito.verify(origin, Mockito.times(1)).snapshot(url);
+            MatcherAssert.assertThat(page.getTitle(), Matchers.is("Page"));
+            MatcherAssert.assertThat(page.getUrl(), Matchers.is(url));
+            MatcherAssert.assertThat(page.getLinks(), Matchers.hasSize(1));
+            MatcherAssert.assertThat(
+                server.take().method(), Matchers.is("HEAD")
+            );
+            MatcherAssert.assertThat(
+                RevalidatingBrowserTestCase.header(
+                    server.take(), "If-None-Match"
+                ),
+                Matchers.is("\"v1\"")
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * RevalidatingBrowser renders the page again if it was modified.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void rendersModifiedPage() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            final String url = server.home().toString() + "page";
+            server.next(
+                new MkAnswer.Simple("").withHeader(
+                    "Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT"
+                )
+            ).next(
+                new MkAnswer.Simple("")
+            ).next(
+                new MkAnswer.Simple("")
+            );
+            final Browser origin = RevalidatingBrowserTestCase.origin(url);
+            final RevalidatingBrowser browser = new RevalidatingBrowser(
+                origin
+            );
+            browser.snapshot(url);
+            browser.snapshot(url);
+            browser.snapshot(url);
+            browser.quit();
+            Mockito.verify(origin, Mockito.times(3)).snapshot(url);
+            Mockito.verify(origin).quit();
+            server.take();
+            MatcherAssert.assertThat(
+                RevalidatingBrowserTestCase.header(
+                    server.take(), "If-Modified-Since"
+                ),
+                Matchers.is("Wed, 21 Oct 2015 07:28:00 GMT")
+            );
+            MatcherAssert.assertThat(
+                server.take().method(), Matchers.is("HEAD")
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * RevalidatingBrowser reads the snapshot from the directory when the
+     * server answers 304, since it keeps only the validators in memory.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void readsNotModifiedPageFromDirectory() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            final String url = server.home().toString() + "page";
+            server.next(
+                new MkAnswer.Simple("").withHeader("ETag", "\"v1\"")
+            ).next(
+                new MkAnswer.Simple(304, "")
+            );
+            final Browser origin = RevalidatingBrowserTestCase.origin(url);
+            final RevalidatingBrowser browser = new RevalidatingBrowser(
+                origin, PooledHttpClient.create(1), this.folder.getRoot()
+            );
+            browser.snapshot(url);
+            final WebPage page = browser.snapshot(url);
+            Mockito.verify(origin, Mockito.times(1)).snapshot(url);
+            MatcherAssert.assertThat(page.getTitle(), Matchers.is("Page"));
+            MatcherAssert.assertThat(page.getLinks(), Matchers.hasSize(1));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * RevalidatingBrowser returns copies of the snapshot it keeps in
+     * memory, so changing them does not change the kept one.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void returnsCopiesOfKeptPage() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer().start();
+        try {
+            final String url = server.home().toString() + "page";
+            server.next(
+                new MkAnswer.Simple("").withHeader("ETag", "\"v1\"")
+            ).next(
+                new MkAnswer.Simple(304, "")
+            ).next(
+                new MkAnswer.Simple(304, "")
+            );
+            final RevalidatingBrowser browser = new RevalidatingBrowser(
+                RevalidatingBrowserTestCase.origin(url),
+                PooledHttpClient.create(1), null
+            );
+            browser.snapshot(url);
+            browser.snapshot(url).getLinks().iterator().next().setHref(
+                "http://www.test.com/changed"
+            );
+            MatcherAssert.assertThat(
+                browser.snapshot(url).getLinks().iterator().next().getHref(),
+                Matchers.is("http://www.test.com")
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Browser which returns the same page every time.
+     * @param url Url of the page.
+     * @return Browser.
+     * @throws Exception If something goes wrong.
+     */
+    private static Browser origin(final String url) throws Exception {
+        final WebPage page = new SnapshotWebPage();
+        page.setUrl(url);
+        page.setName("page");
+        page.setTitle("Page");
+        page.setTextContent("Some text");
+        page.getLinks().add(new Link("Home", "http://www.test.com"));
+        final Browser origin = Mockito.mock(Browser.class);
+        Mockito.when(origin.snapshot(url)).thenReturn(page);
+        return origin;
+    }
+
+    /**
+     * Value of a request header.
+     * @param query Request.
+     * @param name Name of the header, case insensitive.
+     * @return Value or null if the header is missing.
+     */
+    private static String header(final MkQuery query, final String name) {
+        String value = null;
+        for(final Map.Entry<String, List<String>> header
+            : query.headers().entrySet()) {
+            if(header.getKey().equalsIgnoreCase(name)) {
+                value = header.getValue().get(0);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.openqa.selenium.WebDriver;
+
+import com.amihaiemil.charles.sitemap.SitemapXmlLocation;
+
+/**
+ * Unit tests for {@link SitemapXmlCrawl}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class SitemapXmlCrawlTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * SitemapXmlCrawl crawls every url of the sitemap once, except the
+     * ignored ones.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void crawlsEachUrlOnce() throws Exception {
+        final MockWebsite site = new MockWebsite()
+            .page("http://www.test.com")
+            .page("http://www.test.com/a")
+            .page("http://www.test.com/b.js");
+        final String xml =
+            "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+            + "<url><loc>http://www.test.com/</loc></url>"
+            + "<url><loc>http://www.test.com/a</loc></url>"
+            + "<url><loc>http://www.test.com/a#top</loc></url>"
+            + "<url><loc>http://www.test.com/b.js</loc></url>"
+            + "<url><loc>http://www.test.com</loc></url>"
+            + "</urlset>";
+        final WebDriver driver = site.driver();
+        final InMemoryRepository repo = new InMemoryRepository();
+        new SitemapXmlCrawl(
+            driver,
+            new SitemapXmlLocation() {
+                @Override
+                public InputStream getStream() {
+                    return new ByteArrayInputStream(xml.getBytes());
+                }
+                @Override
+                public String origin() {
+                    return null;
+                }
+            },
+            new IgnoredPatterns(Arrays.asList("*.js")), repo, 1
+        ).crawl();
+        MatcherAssert.assertThat(repo.getCrawledPages(), Matchers.hasSize(2));
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com"), Matchers.is(1)
+        );
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/a"), Matchers.is(1)
+        );
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/b.js"), Matchers.is(0)
+        );
+        Mockito.verify(driver).quit();
+    }
+
+    /**
+     * SitemapXmlCrawl recognizes the same page under different urls with
+     * the given canonicalizer and records it under its canonical url.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void crawlsWithGivenCanonicalizer() throws Exception {
+        final MockWebsite site = new MockWebsite()
+            .page("http://www.test.com/a?utm_source=x")
+            .page("http://www.test.com/a?utm_source=y");
+        final String xml =
+            "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+            + "<url><loc>http://www.test.com/a?utm_source=x</loc></url>"
+            + "<url><loc>http://www.test.com/a?utm_source=y</loc></url>"
+            + "</urlset>";
+        final InMemoryRepository repo = new InMemoryRepository();
+        final CrawlHistory history = new InMemoryCrawlHistory();
+        new SitemapXmlCrawl(
+            site.driver(),
+            new SitemapXmlLocation() {
+                @Override
+                public InputStream getStream() {
+                    return new ByteArrayInputStream(xml.getBytes());
+                }
+                @Override
+                public String origin() {
+                    return null;
+                }
+            },
+            new IgnoredPatterns(), repo, 1, history,
+            new UrlCanonicalizer(false, Arrays.asList("utm_*"))
+        ).crawl();
+        MatcherAssert.assertThat(repo.getCrawledPages(), Matchers.hasSize(1));
+        MatcherAssert.assertThat(
+            history.crawled("http://www.test.com/a"),
+            Matchers.greaterThan(0L)
+        );
+    }
+
+    /**
+     * SitemapXmlCrawl without a history crawls every url each time,
+     * even if the same instance crawls again.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void crawlsAgainWithoutHistory() throws Exception {
+        final MockWebsite site = new MockWebsite()
+            .page("http://www.test.com/a")
+            .page("http://www.test.com/b");
+        final String xml =
+            "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+            + "<url><loc>http://www.test.com/a</loc>"
+            + "<changefreq>never</changefreq></url>"
+            + "<url><loc>http://www.test.com/b</loc></url>"
+            + "</urlset>";
+        final InMemoryRepository repo = new InMemoryRepository();
+        final SitemapXmlCrawl crawl = new SitemapXmlCrawl(
+            site.driver(),
+            new SitemapXmlLocation() {
+                @Override
+                public InputStream getStream() {
+                    return new ByteArrayInputStream(xml.getBytes());
+                }
+                @Override
+                public String origin() {
+                    return null;
+                }
+            },
+            repo
+        );
+        crawl.crawl();
+        crawl.crawl();
+        MatcherAssert.assertThat(repo.getCrawledPages(), Matchers.hasSize(4));
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/a"), Matchers.is(2)
+        );
+    }
+
+    /**
+     * SitemapXmlCrawl with a persisted history crawls again only the pages
+     * whose lastmod advanced or whose changefreq window elapsed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void crawlsIncrementally() throws Exception {
+        final MockWebsite site = new MockWebsite()
+            .page("http://www.test.com/old")
+            .page("http://www.test.com/never")
+            .page("http://www.test.com/future")
+            .page("http://www.test.com/new")
+            .page("http://www.test.com/always");
+        final File file = new File(this.folder.getRoot(), "history.txt");
+        final String[] modified = {"2001-01-01", "2002-01-01"};
+        for(final String lastmod : modified) {
+            final String xml =
+                "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+                + "<url><loc>http://www.test.com/old</loc>"
+                + "<lastmod>2001-01-01</lastmod></url>"
+                + "<url><loc>http://www.test.com/never</loc>"
+                + "<changefreq>never</changefreq></url>"
+                + "<url><loc>http://www.test.com/future</loc>"
+                + "<lastmod>2999-01-01T10:00:00+02:00</lastmod></url>"
+                + "<url><loc>http://www.test.com/new</loc>"
+                + "<lastmod>" + lastmod + "</lastmod></url>"
+                + "<url><loc>http://www.test.com/always</loc>"
+                + "<changefreq>always</changefreq></url>"
+                + "</urlset>";
+            final SitemapXmlLocation location = new SitemapXmlLocation() {
+                @Override
+                public InputStream getStream() {
+                    return new ByteArrayInputStream(xml.getBytes());
+                }
+                @Override
+                public String origin() {
+                    return null;
+                }
+            };
+            new SitemapXmlCrawl(
+                site.driver(), location, new IgnoredPatterns(),
+                new InMemoryRepository(), 2, new FileCrawlHistory(file)
+            ).crawl();
+        }
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/old"), Matchers.is(1)
+        );
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/never"), Matchers.is(1)
+        );
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/future"), Matchers.is(1)
+        );
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/new"), Matchers.is(2)
+        );
+        MatcherAssert.assertThat(
+            site.visits("http://www.test.com/always"), Matchers.is(2)
+        );
+    }
+
+    /**
+     * SitemapXmlCrawl does not record, in the history, the pages which an
+     * AsyncRepository failed to export.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void recordsOnlyFlushedPages() throws Exception {
+        final MockWebsite site = new MockWebsite()
+            .page("http://www.test.com/a");
+        final String xml =
+            "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+            + "<url><loc>http://www.test.com/a</loc></url>"
+            + "</urlset>";
+        final SitemapXmlLocation location = new SitemapXmlLocation() {
+            @Override
+            public InputStream getStream() {
+                return new ByteArrayInputStream(xml.getBytes());
+            }
+            @Override
+            public String origin() {
+                return null;
+            }
+        };
+        final Repository failing = new Repository() {
+            @Override
+            public void export(final List<WebPage> pages)
+                throws DataExportException {
+                throw new DataExportException("Export failed!");
+            }
+            @Override
+            public void flush() {
+                //nothing to wait for
+            }
+        };
+        final CrawlHistory history = new InMemoryCrawlHistory();
+        try {
+            new SitemapXmlCrawl(
+                site.driver(), location, new IgnoredPatterns(),
+                new AsyncRepository(failing), 2, history
+            ).crawl();
+            MatcherAssert.assertThat("Crawl did not fail!", false);
+        } catch (final DataExportException ex) {
+            MatcherAssert.assertThat(
+                history.crawled("http://www.test.com/a"), Matchers.is(-1L)
+            );
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * * Neither the name of charles nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles;
+
+import java.util.Arrays;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link UrlCanonicalizer}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 1.2.0
+ */
+public final class UrlCanonicalizerTestCase {
+
+    /**
+     * UrlCanonicalizer removes the fragment and the trailing slash.
+     */
+    @Test
+    public void removesFragmentAndTrailingSlash() {
+        final UrlCanonicalizer canon = new UrlCanonicalizer();
+        MatcherAssert.assertThat(
+            canon.canonical("http://www.amihaiemil.com/page/#top"),
+            Matchers.equalTo("http://www.amihaiemil.com/page")
+        );
+        MatcherAssert.assertThat(
+            canon.canonical("http://www.amihaiemil.com/"),
+            Matchers.equalTo("http://www.amihaiemil.com")
+        );
+        MatcherAssert.assertThat(
+            canon.canonical("www.amihaiemil.com/page/"),
+            Matchers.equalTo("www.amihaiemil.com/page")
+        );
+    }
+
+    /**
+     * UrlCanonicalizer lowercases the scheme and host and removes the
+     * default port, but leaves the path alone.
+     */
+    @Test
+    public void normalizesSchemeHostAndPort() {
+        final UrlCanonicalizer canon = new UrlCanonicalizer();
+        MatcherAssert.assertThat(
+            canon.canonical("HTTP://WWW.Amihaiemil.COM:80/Page.html"),
+            Matchers.equalTo("http://www.amihaiemil.com/Page.html")
+        );
+        MatcherAssert.assertThat(
+            canon.canonical("https://User@Test.com:443/"),
+            Matchers.equalTo("https://User@test.com")
+        );
+        MatcherAssert.assertThat(
+            canon.canonical("http://test.com:8080/a"),
+            Matchers.equalTo("http://test.com:8080/a")
+        );
+    }
+
+    /**
+     * UrlCanonicalizer decodes the unreserved characters and uppercases
+     * the other escapes.
+     */
+    @Test
+    public void normalizesPercentEncoding() {
+        MatcherAssert.assertThat(
+            new UrlCanonicalizer().canonical(
+                "http://test.com/%7euser/a%2fb%41?q=%3d%2D"
+            ),
+            Matchers.equalTo("http://test.com/~user/a%2FbA?q=%3D-")
+        );
+    }
+
+    /**
+     * UrlCanonicalizer can sort and strip the query parameters.
+     */
+    @Test
+    public void sortsAndStripsQuery() {
+        final UrlCanonicalizer canon = new UrlCanonicalizer(
+            true, Arrays.asList("utm_*", "sid")
+        );
+        MatcherAssert.assertThat(
+            canon.canonical("http://test.com/a?z=1&utm_source=x&a=2&sid=3"),
+            Matchers.equalTo("http://test.com/a?a=2&z=1")
+        );
+        MatcherAssert.assertThat(
+            canon.canonical("http://test.com/a/?utm_medium=email"),
+            Matchers.equalTo("http://test.com/a")
+        );
+        MatcherAssert.assertThat(
+            new UrlCanonicalizer().canonical("http://test.com/a?z=1&a=2"),
+            Matchers.equalTo("http://test.com/a?z=1&a=2")
+        );
+    }
+
+    /**
+     * UrlCanonicalizers with the same settings are equal.
+     */
+    @Test
+    public void equalsBySettings() {
+        final UrlCanonicalizer canon = new UrlCanonicalizer(
+            true, Arrays.asList("utm_*")
+        );
+        MatcherAssert.assertThat(
+            canon,
+            Matchers.equalTo(
+                new UrlCanonicalizer(true, Arrays.asList("utm_*"))
+            )
+        );
+        MatcherAssert.assertThat(
+            canon.hashCode(),
+            Matchers.equalTo(
+                new UrlCanonicalizer(true, Arrays.asList("utm_*")).hashCode()
+            )
+        );
+        MatcherAssert.assertThat(
+            canon,
+            Matchers.not(
+                Matchers.equalTo(
+                    new UrlCanonicalizer(false, Arrays.asList("utm_*"))
+                )
+            )
+        );
+        MatcherAssert.assertThat(
+            new UrlCanonicalizer(),
+            Matchers.equalTo(
+                new UrlCanonicalizer(false, Arrays.<String>asList())
+            )
+        );
+    }
+
+    /**
+     * Links with equivalent hrefs are equal and have the same hash code.
+     */
+    @Test
+    public void equivalentLinksAreEqual() {
+        final Link first = new Link("", "HTTP://Test.com:80/%7Ea/#x");
+        final Link second = new Link("", "http://test.com/~a");
+        MatcherAssert.assertThat(first, Matchers.equalTo(second));
+        MatcherAssert.assertThat(
+            first.hashCode(), Matchers.equalTo(second.hashCode())
+        );
+        MatcherAssert.assertThat(
+            Fingerprint.of(first), Matchers.equalTo(Fingerprint.of(second))
+        );
+        second.setHref("http://test.com/b");
+        MatcherAssert.assertThat(first, Matchers.not(Matchers.equalTo(second)));
+    }
+}
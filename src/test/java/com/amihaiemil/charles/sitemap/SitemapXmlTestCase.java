@@ -24,10 +24,24 @@
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */package com.amihaiemil.charles.sitemap;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -36,6 +50,12 @@ import static org.junit.Assert.assertTrue;
  */
 public class SitemapXmlTestCase {
 
+    /**
+     * Temporary folder for the sitemap files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * SitemapXml can unmarshal the urlset.
      */
@@ -77,4 +97,230 @@ public class SitemapXmlTestCase {
                    set.getUrls().size() == 1);
     }
 
+    /**
+     * SitemapXml can read the urls one by one, skipping the extensions.
+     */
+    @Test
+    public void streamsUrls() {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\""
+            + " xmlns:image=\"http://www.google.com/schemas/sitemap-image/1.1\">"
+            + "<url><loc> http://www.test.com/a </loc>"
+            + "<image:image><image:loc>http://www.test.com/a.png</image:loc>"
+            + "</image:image><lastmod>2005-01-01</lastmod></url>"
+            + "<url><loc>http://www.test.com/b</loc>"
+            + "<changefreq>daily</changefreq><priority>0.3</priority></url>"
+            + "</urlset>";
+        Iterator<Url> urls = new SitemapXml(
+            new ByteArrayInputStream(xml.getBytes())
+        ).urls();
+        assertTrue(urls.hasNext());
+        Url first = urls.next();
+        assertEquals("http://www.test.com/a", first.getLoc());
+        assertEquals("2005-01-01", first.getLastmod());
+        assertEquals("", first.getPriority());
+        Url second = urls.next();
+        assertEquals("http://www.test.com/b", second.getLoc());
+        assertEquals("daily", second.getChangefreq());
+        assertEquals("0.3", second.getPriority());
+        assertFalse(urls.hasNext());
+    }
+
+    /**
+     * SitemapXml can stream the urls of a gzipped sitemap index, whose
+     * children are gzipped or not.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void streamsGzippedSitemapIndex() throws Exception {
+        File first = this.folder.newFile("first.xml.gz");
+        this.write(first, this.urlset("a", "b"), true);
+        File second = this.folder.newFile("second.xml");
+        this.write(second, this.urlset("b", "c"), false);
+        File index = this.folder.newFile("index.xml.gz");
+        this.write(
+            index,
+            "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+            + "<sitemap><loc>" + first.getAbsolutePath() + "</loc>"
+            + "<lastmod>2017-01-01</lastmod></sitemap>"
+            + "<sitemap><loc>" + second.getAbsolutePath() + "</loc></sitemap>"
+            + "</sitemapindex>",
+            true
+        );
+        Iterator<Url> urls = new SitemapXml(
+            new SitemapXmlOnDisk(index.getAbsolutePath()), 2
+        ).urls();
+        List<String> locs = new ArrayList<String>();
+        while(urls.hasNext()) {
+            locs.add(urls.next().getLoc());
+        }
+        Collections.sort(locs);
+        assertEquals(
+            Arrays.asList(
+                "http://www.test.com/a", "http://www.test.com/b",
+                "http://www.test.com/b", "http://www.test.com/c"
+            ),
+            locs
+        );
+    }
+
+    /**
+     * SitemapXml resolves relative children against an index on disk,
+     * follows no nested index and reads each child only once, even if
+     * the index lists itself.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void ignoresNestedAndRepeatedIndexes() throws Exception {
+        File child = this.folder.newFile("child.xml");
+        this.write(child, this.urlset("a"), false);
+        File nested = this.folder.newFile("nested.xml");
+        this.write(
+            nested,
+            "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+            + "<sitemap><loc>child.xml</loc></sitemap>"
+            + "</sitemapindex>",
+            false
+        );
+        File index = this.folder.newFile("index.xml");
+        this.write(
+            index,
+            "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+            + "<sitemap><loc>child.xml</loc></sitemap>"
+            + "<sitemap><loc>" + child.getAbsolutePath() + "</loc></sitemap>"
+            + "<sitemap><loc>index.xml</loc></sitemap>"
+            + "<sitemap><loc>nested.xml</loc></sitemap>"
+            + "</sitemapindex>",
+            false
+        );
+        Iterator<Url> urls = new SitemapXml(
+            new SitemapXmlOnDisk(index.getAbsolutePath())
+        ).urls();
+        List<String> locs = new ArrayList<String>();
+        while(urls.hasNext()) {
+            locs.add(urls.next().getLoc());
+        }
+        assertEquals(Arrays.asList("http://www.test.com/a"), locs);
+    }
+
+    /**
+     * SitemapXml skips the children of an index which cannot be read
+     * and still returns the urls of the other children.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void skipsUnreadableChildren() throws Exception {
+        File child = this.folder.newFile("child.xml");
+        this.write(child, this.urlset("a"), false);
+        File broken = this.folder.newFile("broken.xml");
+        this.write(broken, "<urlset><url><loc>", false);
+        File index = this.folder.newFile("index.xml");
+        this.write(
+            index,
+            "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+            + "<sitemap><loc>missing.xml</loc></sitemap>"
+            + "<sitemap><loc>broken.xml</loc></sitemap>"
+            + "<sitemap><loc>child.xml</loc></sitemap>"
+            + "</sitemapindex>",
+            false
+        );
+        Iterator<Url> urls = new SitemapXml(
+            new SitemapXmlOnDisk(index.getAbsolutePath())
+        ).urls();
+        List<String> locs = new ArrayList<String>();
+        while(urls.hasNext()) {
+            locs.add(urls.next().getLoc());
+        }
+        assertEquals(Arrays.asList("http://www.test.com/a"), locs);
+    }
+
+    /**
+     * SitemapXml does not read children from the disk if the index
+     * is not on the disk.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void ignoresDiskChildrenOfRemoteIndex() throws Exception {
+        File child = this.folder.newFile("secret.xml");
+        this.write(child, this.urlset("secret"), false);
+        String xml =
+            "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+            + "<sitemap><loc>" + child.getAbsolutePath() + "</loc></sitemap>"
+            + "<sitemap><loc>file://" + child.getAbsolutePath()
+            + "</loc></sitemap>"
+            + "</sitemapindex>";
+        Iterator<Url> urls = new SitemapXml(
+            new ByteArrayInputStream(xml.getBytes())
+        ).urls();
+        assertFalse(urls.hasNext());
+        assertEquals(
+            "http://www.test.com/sitemaps/child.xml",
+            SitemapIndexUrls.resolve(
+                "http://www.test.com/sitemaps/index.xml", "child.xml"
+            )
+        );
+        assertEquals(
+            "http://www.test.com/var/sitemap.xml",
+            SitemapIndexUrls.resolve(
+                "http://www.test.com/sitemaps/index.xml", "/var/sitemap.xml"
+            )
+        );
+        assertEquals(
+            null,
+            SitemapIndexUrls.resolve(
+                "http://www.test.com/index.xml", "file:///etc/passwd"
+            )
+        );
+    }
+
+    /**
+     * SitemapXml can unmarshal a gzipped urlset.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void unmarshallsGzippedUrlSet() throws Exception {
+        File sitemap = this.folder.newFile("sitemap.xml.gz");
+        this.write(sitemap, this.urlset("a", "b"), true);
+        UrlSet set = new SitemapXml(
+            new SitemapXmlOnDisk(sitemap.getAbsolutePath()).getStream()
+        ).read();
+        assertEquals(2, set.getUrls().size());
+    }
+
+    /**
+     * A urlset.
+     * @param pages Names of the pages.
+     * @return Xml.
+     */
+    private String urlset(final String... pages) {
+        StringBuilder xml = new StringBuilder(
+            "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+        );
+        for(String page : pages) {
+            xml.append("<url><loc>http://www.test.com/").append(page)
+                .append("</loc></url>");
+        }
+        return xml.append("</urlset>").toString();
+    }
+
+    /**
+     * Write the xml into the file.
+     * @param file File.
+     * @param xml Content.
+     * @param gzip Should it be gzipped?
+     * @throws IOException If something goes wrong.
+     */
+    private void write(
+        final File file, final String xml, final boolean gzip
+    ) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if(gzip) {
+            out = new GZIPOutputStream(out);
+        }
+        try {
+            out.write(xml.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
 }